@@ -17,6 +17,7 @@ public class MessageConstant {
     public static final String ADDRESS_BOOK_IS_NULL = "用户地址为空，不能下单";
     public static final String LOGIN_FAILED = "登录失败";
     public static final String UPLOAD_FAILED = "文件上传失败";
+    public static final String UPLOAD_FILE_TYPE_NOT_ALLOWED = "只能上传jpg、jpeg、png、gif、webp格式的图片";
     public static final String SETMEAL_ENABLE_FAILED = "套餐内包含未启售菜品，无法启售";
     public static final String PASSWORD_EDIT_FAILED = "密码修改失败";
     public static final String DISH_ON_SALE = "起售中的菜品不能删除";
@@ -24,5 +25,10 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String TOO_MANY_REQUESTS = "请求过于频繁，请稍后再试";
+    public static final String ITEM_NOT_ON_SALE = "商品已停售";
+    public static final String SHOPPING_CART_ITEM_CHANGED = "购物车中的商品已停售或价格有变化，请重新确认";
+    public static final String SHOPPING_CART_NUMBER_INVALID = "购物车商品数量不正确";
+    public static final String BATCH_SIZE_INVALID = "批量操作的数量必须在1到100之间";
 
 }
@@ -14,4 +14,10 @@ public class AliOssProperties {
     private String accessKeySecret;
     private String bucketName;
 
+    // 超过这个大小（字节）的文件使用分片上传
+    private long multipartThreshold = 5 * 1024 * 1024;
+
+    // 分片上传每一片的大小（字节），oss要求除了最后一片至少100KB
+    private long partSize = 2 * 1024 * 1024;
+
 }
@@ -0,0 +1,36 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.menu-cache")
+@Data
+public class MenuCacheProperties {
+
+    // 本地缓存最多保存多少个key
+    private long localMaximumSize = 2000;
+
+    // 本地缓存的过期时间（秒），正常情况下靠redis的消息失效，这里只是兜底（消息丢失的时候）
+    private long localExpireSeconds = 600;
+
+    // redis中缓存的过期时间（秒），删除缓存之后旧版本的key靠过期自动删除
+    private long redisExpireSeconds = 24 * 60 * 60;
+
+    // 过期时间随机增加的比例（0.1表示增加0~10%），避免大量key同时过期
+    private double expireJitterRatio = 0.1;
+
+    // 查询结果为空（分类下没有起售的商品）的缓存时间（秒），比正常数据短
+    private long negativeExpireSeconds = 60;
+
+    // redis中剩余的过期时间小于这个值（秒）的热点数据提前在后台刷新
+    private long refreshAheadSeconds = 60 * 60;
+
+    // 多久检查一次快要过期的数据（毫秒）
+    private long refreshAheadInterval = 5 * 60 * 1000;
+
+    // 每个节点在内存中保存最近多少个版本的菜单修改记录，客户端的版本比这个更旧的话返回整个菜单
+    private int changeLogSize = 1000;
+
+}
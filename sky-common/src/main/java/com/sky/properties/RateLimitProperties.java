@@ -0,0 +1,78 @@
+package com.sky.properties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.rate-limit")
+@Data
+public class RateLimitProperties implements InitializingBean {
+
+    // 是否开启限流
+    private boolean enabled = true;
+
+    // 全局限流是否通过redis在多个节点之间共享（关闭的话每个节点各自限流）
+    private boolean distributed = false;
+
+    // 不活跃用户的令牌桶多久之后清理（秒）
+    private long idleSeconds = 600;
+
+    // 最多保存多少个用户的令牌桶，超过之后淘汰最久没有使用的
+    private long maxUserBuckets = 100000;
+
+    // 可信的反向代理地址，只有请求直接来自这些地址的时候才使用 X-Forwarded-For / X-Real-IP 中的ip
+    private List<String> trustedProxies = new ArrayList<>(Arrays.asList("127.0.0.1", "0:0:0:0:0:0:0:1"));
+
+    /**
+     * 需要限流的接口，key是接口的映射路径（和@RequestMapping里写的一致）
+     * yml里面key带有特殊字符，要写成 "[/user/order/reminder/{id}]" 的形式
+     */
+    private Map<String, Limit> endpoints = new LinkedHashMap<>();
+
+    public RateLimitProperties() {
+        endpoints.put("/user/order/submit", new Limit(3, 0.5, 200, 100));
+        endpoints.put("/user/order/reminder/{id}", new Limit(3, 0.2, 100, 50));
+        endpoints.put("/user/shoppingCart/add", new Limit(20, 10, 2000, 1000));
+        endpoints.put("/user/shoppingCart/batch", new Limit(10, 5, 1000, 500));
+        endpoints.put("/user/user/login", new Limit(5, 0.5, 200, 100));
+    }
+
+    /**
+     * 绑定配置之后检查，容量和补充速率必须大于0（lua脚本和本地令牌桶都要除以补充速率）
+     */
+    @Override
+    public void afterPropertiesSet() {
+        endpoints.forEach((pattern, limit) -> {
+            if (limit.getUserCapacity() <= 0 || limit.getUserRefillPerSecond() <= 0
+                    || limit.getGlobalCapacity() <= 0 || limit.getGlobalRefillPerSecond() <= 0) {
+                throw new IllegalArgumentException("限流配置的容量和每秒补充的令牌数必须大于0 " + pattern + " " + limit);
+            }
+        });
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        // 单个用户（未登录的按ip）的桶容量和每秒补充的令牌数
+        private double userCapacity;
+        private double userRefillPerSecond;
+
+        // 整个接口的桶容量和每秒补充的令牌数
+        private double globalCapacity;
+        private double globalRefillPerSecond;
+
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.reminder")
+@Data
+public class ReminderProperties {
+
+    // 同一个订单在这个时间窗口内重复催单只提醒一次（秒）
+    private long windowSeconds = 60;
+
+    // 多久把积攒的催单合并推送一次（毫秒）
+    private long flushInterval = 1000;
+
+}
@@ -0,0 +1,36 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    // 购物车是否保存在redis中（关闭的话直接读写数据库）
+    private boolean redisEnabled = true;
+
+    // 多久把redis中修改过的购物车同步到数据库一次（毫秒）
+    private long flushInterval = 5000;
+
+    // 每次同步最多处理多少个用户的购物车
+    private int flushBatchSize = 200;
+
+    // 购物车多少天没有加购新商品就认为是放弃了，定时清理掉（redis中的购物车也用这个过期时间）
+    private int expireDays = 7;
+
+    // 清理购物车的时间
+    private String cleanCron = "0 30 3 * * ?";
+
+    // 每批清理多少个用户的购物车
+    private int cleanBatchSize = 500;
+
+    // 每批之间暂停多久（毫秒），避免长时间占用数据库
+    private long cleanPauseMillis = 200;
+
+    // 每次最多清理多少批，剩下的下次再清理
+    private int cleanMaxBatches = 200;
+
+}
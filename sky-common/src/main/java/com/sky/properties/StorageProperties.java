@@ -0,0 +1,24 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.storage")
+@Data
+public class StorageProperties {
+
+    // 文件保存在哪里 oss 阿里云oss local 本地磁盘（离线环境、测试环境、门店自己部署）
+    private String type = "oss";
+
+    // 本地存储的目录
+    private String localRoot = "upload";
+
+    // 本地存储的文件访问地址前缀，后面拼接上文件名
+    private String localUrlPrefix = "/files/";
+
+    // 文件名是内容的sha256，内容不会变化，浏览器可以一直缓存（秒）
+    private long cacheMaxAgeSeconds = 365 * 24 * 60 * 60;
+
+}
@@ -4,65 +4,186 @@ import com.aliyun.oss.ClientException;
 import com.aliyun.oss.OSS;
 import com.aliyun.oss.OSSClientBuilder;
 import com.aliyun.oss.OSSException;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PartETag;
+import com.aliyun.oss.model.UploadPartRequest;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import java.io.ByteArrayInputStream;
+import org.springframework.core.io.InputStreamSource;
 
-@Data
-@AllArgsConstructor
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 阿里云oss上传
+ * OSSClient内部有连接池，创建一次一直使用，应用关闭的时候调用shutdown
+ */
+@Getter
 @Slf4j
 public class AliOssUtil {
 
-    private String endpoint;
-    private String accessKeyId;
-    private String accessKeySecret;
-    private String bucketName;
+    private final String endpoint;
+    private final String accessKeyId;
+    private final String accessKeySecret;
+    private final String bucketName;
+
+    // 超过这个大小（字节）的文件使用分片上传
+    private final long multipartThreshold;
+
+    // 分片上传每一片的大小（字节）
+    private final long partSize;
+
+    private volatile OSS ossClient;
+
+    public AliOssUtil(String endpoint, String accessKeyId, String accessKeySecret, String bucketName) {
+        this(endpoint, accessKeyId, accessKeySecret, bucketName, 5 * 1024 * 1024, 2 * 1024 * 1024);
+    }
+
+    public AliOssUtil(String endpoint, String accessKeyId, String accessKeySecret, String bucketName,
+                      long multipartThreshold, long partSize) {
+        this.endpoint = endpoint;
+        this.accessKeyId = accessKeyId;
+        this.accessKeySecret = accessKeySecret;
+        this.bucketName = bucketName;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+    }
+
+    /**
+     * 第一次使用的时候创建OSSClient（没有配置oss的环境启动的时候不会出错）
+     */
+    private OSS client() {
+        OSS client = ossClient;
+        if (client == null) {
+            synchronized (this) {
+                client = ossClient;
+                if (client == null) {
+                    client = new OSSClientBuilder().build(endpoint, accessKeyId, accessKeySecret);
+                    ossClient = client;
+                }
+            }
+        }
+        return client;
+    }
 
     /**
-     * 文件上传
+     * 流式上传，不把整个文件读到内存中
+     * 小文件一次putObject，大文件分片上传（每一片重新打开输入流跳到对应的位置）
      *
-     * @param bytes
+     * @param source      可以多次打开的输入流（例如MultipartFile）
+     * @param size        文件大小
+     * @param contentType 可以为null
      * @param objectName
-     * @return
+     * @return 文件访问路径
+     * @throws IOException 读取文件或者上传失败
      */
-    public String upload(byte[] bytes, String objectName) {
+    public String upload(InputStreamSource source, long size, String contentType, String objectName) throws IOException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
 
-        // 创建OSSClient实例。
-        OSS ossClient = new OSSClientBuilder().build(endpoint, accessKeyId, accessKeySecret);
+        try {
+            if (size <= multipartThreshold) {
+                try (InputStream in = source.getInputStream()) {
+                    client().putObject(bucketName, objectName, in, metadata);
+                }
+            } else {
+                multipartUpload(source, size, metadata, objectName);
+            }
+        } catch (OSSException | ClientException e) {
+            throw new IOException("上传到oss失败 " + objectName + " " + e.getMessage(), e);
+        }
 
+        String url = url(objectName);
+        log.info("文件上传到:{} 大小{}", url, size);
+        return url;
+    }
+
+    private void multipartUpload(InputStreamSource source, long size, ObjectMetadata metadata, String objectName) throws IOException {
+        OSS client = client();
+        String uploadId = client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, objectName, metadata)).getUploadId();
         try {
-            // 创建PutObject请求。
-            ossClient.putObject(bucketName, objectName, new ByteArrayInputStream(bytes));
-        } catch (OSSException oe) {
-            System.out.println("Caught an OSSException, which means your request made it to OSS, "
-                    + "but was rejected with an error response for some reason.");
-            System.out.println("Error Message:" + oe.getErrorMessage());
-            System.out.println("Error Code:" + oe.getErrorCode());
-            System.out.println("Request ID:" + oe.getRequestId());
-            System.out.println("Host ID:" + oe.getHostId());
-        } catch (ClientException ce) {
-            System.out.println("Caught an ClientException, which means the client encountered "
-                    + "a serious internal problem while trying to communicate with OSS, "
-                    + "such as not being able to access the network.");
-            System.out.println("Error Message:" + ce.getMessage());
-        } finally {
-            if (ossClient != null) {
-                ossClient.shutdown();
+            List<PartETag> partETags = new ArrayList<>();
+            long position = 0;
+            for (int partNumber = 1; position < size; partNumber++) {
+                long length = Math.min(partSize, size - position);
+                try (InputStream in = source.getInputStream()) {
+                    skipFully(in, position);
+                    UploadPartRequest request = new UploadPartRequest();
+                    request.setBucketName(bucketName);
+                    request.setKey(objectName);
+                    request.setUploadId(uploadId);
+                    request.setInputStream(in);
+                    request.setPartSize(length);
+                    request.setPartNumber(partNumber);
+                    partETags.add(client.uploadPart(request).getPartETag());
+                }
+                position += length;
+            }
+            client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+        } catch (IOException | RuntimeException e) {
+            // 失败的话取消，已经上传的分片不会一直占用空间
+            try {
+                client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+            } catch (RuntimeException abortException) {
+                log.warn("取消分片上传失败 {} {}", objectName, abortException.getMessage());
             }
+            throw e;
         }
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("文件长度不足");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
 
-        //文件访问路径规则 https://BucketName.Endpoint/ObjectName
-        StringBuilder stringBuilder = new StringBuilder("https://");
-        stringBuilder
-                .append(bucketName)
-                .append(".")
-                .append(endpoint)
-                .append("/")
-                .append(objectName);
+    /**
+     * oss中是否已经有这个文件
+     *
+     * @param objectName
+     * @return
+     * @throws IOException 查询失败
+     */
+    public boolean exists(String objectName) throws IOException {
+        try {
+            return client().doesObjectExist(bucketName, objectName);
+        } catch (OSSException | ClientException e) {
+            throw new IOException("查询oss文件失败 " + objectName + " " + e.getMessage(), e);
+        }
+    }
 
-        log.info("文件上传到:{}", stringBuilder.toString());
+    /**
+     * 文件访问路径规则 https://BucketName.Endpoint/ObjectName
+     *
+     * @param objectName
+     * @return
+     */
+    public String url(String objectName) {
+        return "https://" + bucketName + "." + endpoint + "/" + objectName;
+    }
 
-        return stringBuilder.toString();
+    /**
+     * 关闭OSSClient（应用关闭的时候）
+     */
+    public void shutdown() {
+        OSS client = ossClient;
+        if (client != null) {
+            client.shutdown();
+        }
     }
 }
@@ -0,0 +1,107 @@
+package com.sky.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以long为key的只读map（开放寻址，线性探测）
+ * 创建之后不能修改，key不用装箱成Long，查询的时候也没有多余的对象分配，适合保存按id查询的只读数据
+ * @param <V>
+ */
+public final class LongKeyMap<V> {
+
+    private static final LongKeyMap<?> EMPTY = from(Collections.emptyMap());
+
+    private final long[] keys;
+
+    private final Object[] values;
+
+    private final int mask;
+
+    private final int size;
+
+    private LongKeyMap(int size) {
+        // 容量是2的幂，并且至少是元素个数的两倍，保证探测的长度很短
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.size = size;
+    }
+
+    /**
+     * 根据map创建（value不能为null）
+     * @param map
+     * @param <V>
+     * @return
+     */
+    public static <V> LongKeyMap<V> from(Map<Long, V> map) {
+        LongKeyMap<V> longKeyMap = new LongKeyMap<>(map.size());
+        map.forEach(longKeyMap::insert);
+        return longKeyMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> LongKeyMap<V> empty() {
+        return (LongKeyMap<V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = index(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return (V) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public V get(Long key) {
+        return key == null ? null : get(key.longValue());
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 所有的value（顺序不固定）
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null) {
+                list.add((V) value);
+            }
+        }
+        return list;
+    }
+
+    private void insert(Long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value can not be null");
+        }
+        int index = index(key);
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    private int index(long key) {
+        // 斐波那契散列，让连续的id分散开
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+}
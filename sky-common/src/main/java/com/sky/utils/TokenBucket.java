@@ -0,0 +1,62 @@
+package com.sky.utils;
+
+/**
+ * 本地令牌桶（线程安全）
+ * 按固定速率补充令牌，桶满之后不再累积，可以允许一定程度的突发请求
+ */
+public class TokenBucket {
+
+    // 桶的容量（最多允许的突发请求数）
+    private final double capacity;
+
+    // 每纳秒补充的令牌数
+    private final double tokensPerNano;
+
+    // 当前剩余的令牌数
+    private double tokens;
+
+    // 上一次补充令牌的时间
+    private long lastRefillNanos;
+
+    /**
+     * @param capacity 桶的容量
+     * @param refillPerSecond 每秒补充的令牌数
+     */
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000D;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @return 0 表示获取成功，否则是还需要等待的纳秒数
+     */
+    public synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * 退还一个令牌（获取之后请求又被其他限制拒绝的时候调用），不会超过桶的容量
+     */
+    public synchronized void release() {
+        refill(System.nanoTime());
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+
+}
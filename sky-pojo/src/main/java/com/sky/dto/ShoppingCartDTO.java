@@ -9,5 +9,7 @@ public class ShoppingCartDTO implements Serializable {
     private Long dishId;
     private Long setmealId;
     private String dishFlavor;
+    // 批量修改购物车时的目标数量，0表示从购物车中删除
+    private Integer number;
 
 }
@@ -0,0 +1,24 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ShoppingCartSummaryDTO implements Serializable {
+    //合计金额
+    private BigDecimal amount;
+
+    //商品总件数
+    private Integer dishCount;
+
+    //菜品摘要 菜品*数量;
+    private String dishSummary;
+}
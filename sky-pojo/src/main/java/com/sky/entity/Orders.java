@@ -107,4 +107,10 @@ public class Orders implements Serializable {
 
     //餐具数量状态  1按餐量提供  0选择具体数量
     private Integer tablewareStatus;
+
+    //菜品摘要（下单时生成，格式 菜品*数量;）
+    private String dishSummary;
+
+    //商品总件数
+    private Integer dishCount;
 }
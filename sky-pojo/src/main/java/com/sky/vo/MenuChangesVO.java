@@ -0,0 +1,42 @@
+package com.sky.vo;
+
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuChangesVO implements Serializable {
+
+    //服务端当前的菜单版本号，客户端下一次带过来
+    private Long revision;
+
+    //true表示返回的是整个菜单，客户端需要替换本地保存的全部数据
+    private Boolean full;
+
+    //修改了的（或者整个菜单的）起售中的分类
+    private List<Category> categories;
+
+    //修改了的（或者整个菜单的）起售中的菜品（包含口味）
+    private List<DishVO> dishes;
+
+    //修改了的（或者整个菜单的）起售中的套餐
+    private List<Setmeal> setmeals;
+
+    //删除或者停售的分类id
+    private List<Long> deletedCategoryIds;
+
+    //删除或者停售的菜品id
+    private List<Long> deletedDishIds;
+
+    //删除或者停售的套餐id
+    private List<Long> deletedSetmealIds;
+}
@@ -0,0 +1,30 @@
+package com.sky.vo;
+
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuVO implements Serializable {
+
+    //菜单版本号
+    private Long version;
+
+    //起售中的分类
+    private List<Category> categories;
+
+    //起售中的菜品（包含口味）
+    private List<DishVO> dishes;
+
+    //起售中的套餐
+    private List<Setmeal> setmeals;
+}
@@ -0,0 +1,23 @@
+package com.sky.vo;
+
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchVO implements Serializable {
+
+    //匹配的菜品（包含口味，名称匹配的排在前面）
+    private List<DishVO> dishes;
+
+    //匹配的套餐（名称匹配的排在前面）
+    private List<Setmeal> setmeals;
+}
@@ -0,0 +1,424 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.properties.MenuCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 菜单的两级缓存：本地caffeine + redis
+ * 读的时候先查本地，再查redis，最后查数据库
+ *
+ * redis中的key带有版本号（例如 dish_1:v3），每个key的版本号保存在hash menu_cache_version中
+ * 删除缓存的时候只需要把对应分类的版本号加一，不需要keys扫描，旧版本的数据过期之后自动删除
+ * 同时通过redis的发布订阅通知所有节点删除本地缓存
+ * 消息格式 nodeId|类型|key1,key2，类型是 evict（数据修改了）或者 refresh（预热、提前刷新，数据没有变化）
+ *
+ * 防止缓存击穿：同一个节点上同一个key同时只有一个线程去加载，其他线程等待它的结果
+ * 空的结果也会缓存，只是过期时间比较短；redis中的过期时间加上随机值，避免同时过期
+ */
+@Component
+@Slf4j
+public class MenuCache implements MessageListener {
+
+    // 通知各个节点删除本地缓存的频道
+    public static final String CHANNEL = "menu_cache_evict";
+
+    // 消息的类型：删除缓存、重新加载缓存
+    private static final String MESSAGE_EVICT = "evict";
+
+    private static final String MESSAGE_REFRESH = "refresh";
+
+    private static final String VERSION_KEY = "menu_cache_version";
+
+    private static final String DISH_PREFIX = "dish_";
+
+    private static final String SETMEAL_PREFIX = "setmeal_";
+
+    private static final String SETMEAL_DISH_PREFIX = "setmeal_dish_";
+
+    private static final String CATEGORY_PREFIX = "category_";
+
+    // 不区分类型的分类列表
+    private static final String CATEGORY_ALL = CATEGORY_PREFIX + "all";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    // 当前节点的标识，收到自己发出的消息的时候不用再处理
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Cache<String, Object> localCache;
+
+    private final Counter redisHits;
+
+    private final Counter redisMisses;
+
+    // 正在加载的key
+    private final Map<String, CompletableFuture<Object>> loadingFutures = new ConcurrentHashMap<>();
+
+    // 等待其他线程加载的次数
+    private final Counter loadWaits;
+
+    // 每次删除缓存加一
+    private final AtomicLong evictGeneration = new AtomicLong();
+
+    public MenuCache(RedisTemplate<String, Object> redisTemplate,
+                     StringRedisTemplate stringRedisTemplate,
+                     MenuCacheProperties menuCacheProperties,
+                     MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.menuCacheProperties = menuCacheProperties;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getLocalMaximumSize())
+                .expireAfter(new Expiry<String, Object>() {
+                    @Override
+                    public long expireAfterCreate(String key, Object value, long currentTime) {
+                        long seconds = isEmpty(value) ? menuCacheProperties.getNegativeExpireSeconds() : menuCacheProperties.getLocalExpireSeconds();
+                        return TimeUnit.SECONDS.toNanos(seconds);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Object value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Object value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // 本地缓存的命中、未命中、淘汰、大小
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "menu_cache");
+        this.redisHits = Counter.builder("menu_cache.redis.requests")
+                .tag("result", "hit")
+                .description("本地缓存未命中之后读取redis的次数（按是否命中区分）")
+                .register(meterRegistry);
+        this.redisMisses = Counter.builder("menu_cache.redis.requests")
+                .tag("result", "miss")
+                .description("本地缓存未命中之后读取redis的次数（按是否命中区分）")
+                .register(meterRegistry);
+        this.loadWaits = Counter.builder("menu_cache.load.waits")
+                .description("等待其他线程加载同一个key的次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 分类下菜品的缓存key
+     */
+    public static String dishKey(Long categoryId) {
+        return DISH_PREFIX + categoryId;
+    }
+
+    public static List<String> dishKeys(Collection<Long> categoryIds) {
+        return categoryIds.stream().map(MenuCache::dishKey).collect(Collectors.toList());
+    }
+
+    /**
+     * 从菜品缓存的key中解析出分类id，不是菜品缓存的key返回null
+     */
+    public static Long parseDishKey(String key) {
+        return key.startsWith(DISH_PREFIX) ? parseId(key.substring(DISH_PREFIX.length())) : null;
+    }
+
+    /**
+     * 从套餐缓存的key中解析出分类id，不是套餐缓存的key返回null
+     */
+    public static Long parseSetmealKey(String key) {
+        return key.startsWith(SETMEAL_PREFIX) ? parseId(key.substring(SETMEAL_PREFIX.length())) : null;
+    }
+
+    private static Long parseId(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 分类下套餐的缓存key
+     */
+    public static String setmealKey(Long categoryId) {
+        return SETMEAL_PREFIX + categoryId;
+    }
+
+    public static List<String> setmealKeys(Collection<Long> categoryIds) {
+        return categoryIds.stream().map(MenuCache::setmealKey).collect(Collectors.toList());
+    }
+
+    /**
+     * 套餐中菜品列表的缓存key（按套餐id）
+     */
+    public static String setmealDishKey(Long setmealId) {
+        return SETMEAL_DISH_PREFIX + setmealId;
+    }
+
+    public static List<String> setmealDishKeys(Collection<Long> setmealIds) {
+        return setmealIds.stream().map(MenuCache::setmealDishKey).collect(Collectors.toList());
+    }
+
+    /**
+     * 从套餐中菜品列表的缓存key中解析出套餐id，不是这种缓存的key返回null
+     */
+    public static Long parseSetmealDishKey(String key) {
+        return key.startsWith(SETMEAL_DISH_PREFIX) ? parseId(key.substring(SETMEAL_DISH_PREFIX.length())) : null;
+    }
+
+    /**
+     * 分类列表的缓存key
+     * @param type 分类类型，null表示所有类型
+     */
+    public static String categoryKey(Integer type) {
+        return type == null ? CATEGORY_ALL : CATEGORY_PREFIX + type;
+    }
+
+    /**
+     * 所有分类列表的缓存key（分类修改之后全部删除）
+     */
+    public static List<String> categoryKeys() {
+        // 分类类型 1 菜品分类 2 套餐分类
+        return Arrays.asList(categoryKey(null), categoryKey(1), categoryKey(2));
+    }
+
+    /**
+     * 依次从本地缓存、redis、数据库中获取
+     * @param key
+     * @param loader 缓存中都没有的时候查询数据库
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        // 已经有线程在加载这个key了，等待它的结果
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadingFutures.putIfAbsent(key, future);
+        if (loading != null) {
+            loadWaits.increment();
+            try {
+                return (T) loading.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            // 加载期间有缓存被删除的话，加载到的可能是旧数据，不放到本地缓存中
+            long generation = evictGeneration.get();
+            value = load(key, loader);
+            if (value != null && evictGeneration.get() == generation) {
+                localCache.put(key, value);
+            }
+            future.complete(value);
+            return (T) value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingFutures.remove(key, future);
+        }
+    }
+
+    /**
+     * 从redis中获取，没有的话查询数据库再放到redis中
+     */
+    private Object load(String key, Supplier<?> loader) {
+        // 先拿到版本号再查询数据库，查询期间缓存被删除了的话写入的是旧版本的key，不会把旧数据当成新的
+        String redisKey = versionedKey(key);
+        Object value = redisTemplate.opsForValue().get(redisKey);
+        if (value != null) {
+            redisHits.increment();
+            return value;
+        }
+
+        redisMisses.increment();
+        value = loader.get();
+        if (value == null) {
+            return null;
+        }
+        long seconds = isEmpty(value) ? menuCacheProperties.getNegativeExpireSeconds() : menuCacheProperties.getRedisExpireSeconds();
+        redisTemplate.opsForValue().set(redisKey, value, jitter(seconds), TimeUnit.SECONDS);
+        return value;
+    }
+
+    /**
+     * 过期时间加上一个随机值
+     */
+    private long jitter(long seconds) {
+        long bound = (long) (seconds * menuCacheProperties.getExpireJitterRatio());
+        return bound > 0 ? seconds + ThreadLocalRandom.current().nextLong(bound + 1) : seconds;
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value instanceof Collection && ((Collection<?>) value).isEmpty();
+    }
+
+    /**
+     * 重新加载缓存：先查询数据库写入下一个版本的key，再把版本号加一
+     * 切换之前读到的还是旧数据，切换之后读到的就是新数据，不会有读不到缓存去查数据库的时候
+     * @param key
+     * @param loader
+     */
+    public void refresh(String key, Supplier<?> loader) {
+        Object version = stringRedisTemplate.opsForHash().get(VERSION_KEY, key);
+        long nextVersion = (version == null ? 0 : Long.parseLong(version.toString())) + 1;
+
+        Object value = loader.get();
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        long seconds = isEmpty(value) ? menuCacheProperties.getNegativeExpireSeconds() : menuCacheProperties.getRedisExpireSeconds();
+        redisTemplate.opsForValue().set(key + ":v" + nextVersion, value, jitter(seconds), TimeUnit.SECONDS);
+
+        Long newVersion = stringRedisTemplate.opsForHash().increment(VERSION_KEY, key, 1);
+        evictGeneration.incrementAndGet();
+        if (newVersion == nextVersion) {
+            localCache.put(key, value);
+        } else {
+            // 同时有其他的修改，写入的版本已经不是最新的了
+            localCache.invalidate(key);
+        }
+        publish(MESSAGE_REFRESH, Collections.singletonList(key));
+    }
+
+    /**
+     * 本地缓存中的key（当前节点上的热点数据）在redis中快要过期了的
+     * 空的结果过期时间本来就很短，不需要提前刷新
+     * @param seconds 剩余的过期时间小于这个值
+     * @return
+     */
+    public List<String> keysNearExpiry(long seconds) {
+        List<String> keys = new ArrayList<>();
+        localCache.asMap().forEach((key, value) -> {
+            if (!isEmpty(value)) {
+                keys.add(key);
+            }
+        });
+        if (keys.isEmpty()) {
+            return keys;
+        }
+
+        HashOperations<String, String, String> hash = stringRedisTemplate.opsForHash();
+        List<String> versions = hash.multiGet(VERSION_KEY, keys);
+        List<Object> ttls = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < keys.size(); i++) {
+                String version = versions.get(i);
+                stringRedisConnection.ttl(keys.get(i) + ":v" + (version == null ? 0 : version));
+            }
+            return null;
+        });
+
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Long ttl = (Long) ttls.get(i);
+            // -2表示redis中已经没有了
+            if (ttl != null && (ttl == -2 || (ttl >= 0 && ttl < seconds))) {
+                result.add(keys.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 删除缓存
+     * @param key 例如 dish_1
+     */
+    public void evict(String key) {
+        evict(Collections.singletonList(key));
+    }
+
+    /**
+     * 删除缓存：版本号加一（一次pipeline），然后通知所有节点删除本地缓存
+     * @param keys
+     */
+    public void evict(Collection<String> keys) {
+        Set<String> distinctKeys = new LinkedHashSet<>(keys);
+        if (distinctKeys.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+            distinctKeys.forEach(key -> stringRedisConnection.hIncrBy(VERSION_KEY, key, 1));
+            return null;
+        });
+        evictGeneration.incrementAndGet();
+        localCache.invalidateAll(distinctKeys);
+        publish(MESSAGE_EVICT, distinctKeys);
+    }
+
+    private void publish(String type, Collection<String> keys) {
+        stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + type + "|" + String.join(",", keys));
+    }
+
+    /**
+     * 收到其他节点删除或者重新加载缓存的消息
+     * 两种消息都只删除本地缓存中列出的key，下次读取的时候从redis获取新版本
+     * 菜单快照由 MenuChangeLog 收到修改记录的时候按版本号重新加载
+     */
+    @Override
+    public void onMessage(Message message, byte[] channel) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", -1);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        List<String> keys = Arrays.asList(parts[2].split(","));
+        if (MESSAGE_REFRESH.equals(parts[1])) {
+            // 预热和提前刷新很频繁，不记录info日志
+            log.debug("收到重新加载菜单缓存的消息 {}", keys);
+        } else {
+            log.info("收到删除菜单缓存的消息 {}", keys);
+        }
+        evictGeneration.incrementAndGet();
+        localCache.invalidateAll(keys);
+    }
+
+    private String versionedKey(String key) {
+        Object version = stringRedisTemplate.opsForHash().get(VERSION_KEY, key);
+        return key + ":v" + (version == null ? 0 : version);
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.properties.MenuCacheProperties;
+import com.sky.service.CategoryService;
+import com.sky.service.DishService;
+import com.sky.service.SetmealService;
+import com.sky.vo.DishItemVO;
+import com.sky.vo.DishVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 菜单缓存的预热
+ * 启动的时候加载所有分类的缓存；管理端修改之后在后台重新加载对应分类的缓存再切换过去；快要过期的热点数据提前刷新
+ * 这样用户基本不会遇到缓存没有数据去查询数据库的情况
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuCacheWarmer {
+
+    // 分类类型 1 菜品分类 2 套餐分类
+    private static final int DISH_CATEGORY = 1;
+
+    private static final int SETMEAL_CATEGORY = 2;
+
+    private final MenuCache menuCache;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    private final CategoryService categoryService;
+
+    // 刷新分类列表的时候直接查询数据库（CategoryService的查询走的是缓存）
+    private final CategoryMapper categoryMapper;
+
+    private final DishService dishService;
+
+    private final SetmealService setmealService;
+
+    // 后台加载缓存的线程（只有一个，同一时间只有一个加载任务在查询数据库）
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "menu-cache-warmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 查询分类下起售中的菜品（包含口味）
+     * @param categoryId
+     * @return
+     */
+    public List<DishVO> loadDishes(Long categoryId) {
+        // 把分类的条件id和在销售中这两个条件封装到Dish中(这里要注意了，当时我封装的是map)
+        Map<String, Object> params = new HashMap<>();
+        params.put("categoryId", categoryId);
+        params.put("status", StatusConstant.ENABLE);
+        return dishService.listWithFlavor(params);
+    }
+
+    /**
+     * 查询分类下起售中的套餐
+     * @param categoryId
+     * @return
+     */
+    public List<Setmeal> loadSetmeals(Long categoryId) {
+        // 这里把查询的条件保存到Setmeal这个对象中
+        Setmeal setmeal = Setmeal.builder()
+                .categoryId(categoryId)
+                .status(StatusConstant.ENABLE)
+                .build();
+        return setmealService.list(setmeal);
+    }
+
+    /**
+     * 查询套餐中包含的菜品
+     * @param setmealId
+     * @return
+     */
+    public List<DishItemVO> loadSetmealDishes(Long setmealId) {
+        return setmealService.getDishItemById(setmealId);
+    }
+
+    /**
+     * 在后台重新加载这些分类的菜品缓存
+     * @param categoryIds
+     */
+    public void refreshDishes(Collection<Long> categoryIds) {
+        refreshAsync(MenuCache.dishKeys(categoryIds));
+    }
+
+    /**
+     * 在后台重新加载这些分类的套餐缓存
+     * @param categoryIds
+     */
+    public void refreshSetmeals(Collection<Long> categoryIds) {
+        refreshAsync(MenuCache.setmealKeys(categoryIds));
+    }
+
+    /**
+     * 在后台重新加载这些套餐中菜品列表的缓存
+     * @param setmealIds
+     */
+    public void refreshSetmealDishes(Collection<Long> setmealIds) {
+        refreshAsync(MenuCache.setmealDishKeys(setmealIds));
+    }
+
+    /**
+     * 启动之后加载所有起售中分类的缓存（redis中已经有的只加载到本地缓存）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        executor.execute(() -> {
+            try {
+                List<Category> categories = categoryService.list(null);
+                for (Category category : categories) {
+                    if (Objects.equals(category.getType(), DISH_CATEGORY)) {
+                        menuCache.get(MenuCache.dishKey(category.getId()), () -> loadDishes(category.getId()));
+                    } else if (Objects.equals(category.getType(), SETMEAL_CATEGORY)) {
+                        menuCache.get(MenuCache.setmealKey(category.getId()), () -> loadSetmeals(category.getId()));
+                    }
+                }
+                log.info("菜单缓存预热完成 {} 个分类", categories.size());
+            } catch (Exception e) {
+                log.error("菜单缓存预热失败", e);
+            }
+        });
+    }
+
+    /**
+     * 快要过期的热点数据提前刷新
+     */
+    @Scheduled(fixedDelayString = "${sky.menu-cache.refresh-ahead-interval:300000}")
+    public void refreshAhead() {
+        List<String> keys = menuCache.keysNearExpiry(menuCacheProperties.getRefreshAheadSeconds());
+        if (!keys.isEmpty()) {
+            log.info("提前刷新快要过期的菜单缓存 {}", keys);
+            refreshAsync(keys);
+        }
+    }
+
+    private void refreshAsync(List<String> keys) {
+        List<String> copy = new ArrayList<>(keys);
+        executor.execute(() -> copy.forEach(this::refresh));
+    }
+
+    private void refresh(String key) {
+        try {
+            Long dishCategoryId = MenuCache.parseDishKey(key);
+            Long setmealCategoryId = MenuCache.parseSetmealKey(key);
+            Long setmealId = MenuCache.parseSetmealDishKey(key);
+            if (MenuCache.categoryKey(null).equals(key)) {
+                menuCache.refresh(key, () -> categoryMapper.list(null));
+            } else if (MenuCache.categoryKey(DISH_CATEGORY).equals(key)) {
+                menuCache.refresh(key, () -> categoryMapper.list(DISH_CATEGORY));
+            } else if (MenuCache.categoryKey(SETMEAL_CATEGORY).equals(key)) {
+                menuCache.refresh(key, () -> categoryMapper.list(SETMEAL_CATEGORY));
+            } else if (setmealId != null) {
+                menuCache.refresh(key, () -> loadSetmealDishes(setmealId));
+            } else if (dishCategoryId != null) {
+                menuCache.refresh(key, () -> loadDishes(dishCategoryId));
+            } else if (setmealCategoryId != null) {
+                menuCache.refresh(key, () -> loadSetmeals(setmealCategoryId));
+            } else {
+                menuCache.evict(key);
+            }
+        } catch (Exception e) {
+            // 重新加载失败的话直接删除缓存，下一次读取的时候再加载
+            log.error("重新加载菜单缓存失败 {}", key, e);
+            menuCache.evict(key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.sky.cache;
+
+import com.sky.service.DishService;
+import com.sky.service.MenuSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+
+/**
+ * 处理管理端的菜单修改，控制器只发布MenuChangedEvent
+ * 搜索索引按id增量更新，列表缓存在后台重新加载，菜单快照标记为过期在后台重新加载，请求线程不用等待
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuChangeListener {
+
+    private final MenuSearchService menuSearchService;
+
+    private final MenuCacheWarmer menuCacheWarmer;
+
+    // 记录修改了哪些菜品和套餐，菜单的版本号加一
+    private final MenuChangeLog menuChangeLog;
+
+    private final MenuSnapshotHolder menuSnapshotHolder;
+
+    private final DishService dishService;
+
+    @EventListener
+    public void onMenuChanged(MenuChangedEvent event) {
+        if (event.getType() == MenuChangeLog.Type.DISH) {
+            menuSearchService.refreshDishes(event.getIds());
+            menuCacheWarmer.refreshDishes(event.getCategoryIds());
+            // 套餐详情中显示的是菜品的图片和描述，包含这些菜品的套餐也要刷新
+            menuCacheWarmer.refreshSetmealDishes(dishService.listSetmealIds(new ArrayList<>(event.getIds())));
+        } else if (event.getType() == MenuChangeLog.Type.SETMEAL) {
+            menuSearchService.refreshSetmeals(event.getIds());
+            menuCacheWarmer.refreshSetmeals(event.getCategoryIds());
+            // 新的套餐id之前可能被查询过（缓存了空的菜品列表）
+            menuCacheWarmer.refreshSetmealDishes(event.getIds());
+        }
+        menuChangeLog.record(event.getType(), event.getIds());
+        // 快照中只有菜品和套餐
+        if (event.getType() != MenuChangeLog.Type.CATEGORY) {
+            menuSnapshotHolder.markStale();
+        }
+    }
+
+}
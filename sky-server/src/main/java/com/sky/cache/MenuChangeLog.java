@@ -0,0 +1,142 @@
+package com.sky.cache;
+
+import com.sky.properties.MenuCacheProperties;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * 菜单的修改记录（每个节点在内存中保存最近的一部分）
+ * 每次修改菜单版本号加一，同时记录这个版本修改了哪些分类、菜品、套餐
+ * 口味算作菜品的修改，套餐中的菜品算作套餐的修改
+ * 修改记录通过redis的发布订阅同步给其他节点，消息丢失或者记录已经被淘汰的时候查不到完整的修改，客户端需要重新获取整个菜单
+ * 其他节点收到修改记录的时候，版本号比本地的菜单快照新才在后台重新加载快照，搜索索引按记录中的id增量更新
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuChangeLog implements MessageListener {
+
+    public static final String CHANNEL = "menu_change";
+
+    private final MenuVersion menuVersion;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MenuSnapshotHolder menuSnapshotHolder;
+
+    private final MenuSearchIndex menuSearchIndex;
+
+    // 当前节点的标识，收到自己发出的消息的时候不用再处理
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 版本号 -> 这个版本的修改
+    private final NavigableMap<Long, Change> changes = new ConcurrentSkipListMap<>();
+
+    public enum Type {
+        CATEGORY, DISH, SETMEAL
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Change {
+
+        private final long revision;
+
+        private final Type type;
+
+        private final List<Long> ids;
+
+    }
+
+    /**
+     * 记录一次修改，菜单的版本号加一
+     * @param type
+     * @param ids 修改了的id（包括删除的）
+     * @return 新的版本号
+     */
+    public long record(Type type, Collection<Long> ids) {
+        long revision = menuVersion.increment();
+        Change change = new Change(revision, type, new ArrayList<>(ids));
+        add(change);
+        String idList = change.getIds().stream().map(String::valueOf).collect(Collectors.joining(","));
+        stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + revision + "|" + type + "|" + idList);
+        return revision;
+    }
+
+    /**
+     * 查询某个版本之后的所有修改（按版本号排序）
+     * @param since 客户端当前的版本号
+     * @param current 服务端当前的版本号
+     * @return 修改记录不完整（超出了保存的范围，或者有消息丢失）的时候返回null
+     */
+    public List<Change> since(long since, long current) {
+        if (since > current) {
+            return null;
+        }
+        if (since == current) {
+            return Collections.emptyList();
+        }
+        List<Change> list = new ArrayList<>(changes.subMap(since, false, current, true).values());
+        // 每个版本都有一条记录，数量对不上说明缺少了某些版本
+        return list.size() == current - since ? list : null;
+    }
+
+    private void add(Change change) {
+        changes.put(change.getRevision(), change);
+        while (changes.size() > menuCacheProperties.getChangeLogSize()) {
+            changes.pollFirstEntry();
+        }
+    }
+
+    /**
+     * 收到其他节点的修改记录，菜单快照的版本比这次修改旧的话在后台重新加载
+     * 搜索索引只更新这次修改的菜品或套餐；前一个版本的记录缺失（有消息丢失）的时候不知道漏了哪些修改，整个重新加载
+     * 消息格式 nodeId|版本号|类型|id1,id2
+     */
+    @Override
+    public void onMessage(Message message, byte[] channel) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", -1);
+        if (parts.length != 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (String id : parts[3].split(",")) {
+                if (!id.isEmpty()) {
+                    ids.add(Long.valueOf(id));
+                }
+            }
+            Change change = new Change(Long.parseLong(parts[1]), Type.valueOf(parts[2]), ids);
+            boolean missing = !changes.isEmpty() && !changes.containsKey(change.getRevision() - 1);
+            add(change);
+            menuSnapshotHolder.markStale(change.getRevision());
+            if (missing) {
+                menuSearchIndex.rebuild();
+            } else if (change.getType() == Type.DISH) {
+                menuSearchIndex.refreshDishes(change.getIds());
+            } else if (change.getType() == Type.SETMEAL) {
+                menuSearchIndex.refreshSetmeals(change.getIds());
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("无法解析菜单修改记录 {}", parts, e);
+        }
+    }
+
+}
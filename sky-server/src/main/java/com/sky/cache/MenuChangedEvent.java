@@ -0,0 +1,28 @@
+package com.sky.cache;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 管理端修改了分类、菜品或套餐之后发布的事件，由MenuChangeListener统一刷新缓存、搜索索引和菜单快照
+ */
+@Getter
+@RequiredArgsConstructor
+public class MenuChangedEvent {
+
+    private final MenuChangeLog.Type type;
+
+    // 修改了的id（包括删除的）
+    private final Collection<Long> ids;
+
+    // 需要刷新列表缓存的分类（修改了分类的话包括原来的分类），分类本身的修改不需要
+    private final Collection<Long> categoryIds;
+
+    public MenuChangedEvent(MenuChangeLog.Type type, Collection<Long> ids) {
+        this(type, ids, Collections.emptyList());
+    }
+
+}
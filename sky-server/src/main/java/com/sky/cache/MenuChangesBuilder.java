@@ -0,0 +1,149 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.vo.DishVO;
+import com.sky.vo.MenuChangesVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 客户端的菜单增量同步
+ * 根据修改记录找出客户端的版本之后修改了哪些分类、菜品、套餐，当前的数据从菜单快照中获取
+ * 修改记录不完整的时候返回整个菜单
+ * 分类直接查询数据库，不使用本地的分类缓存（其他节点修改之后本节点的缓存可能还是旧的，客户端会拿到新版本号和旧分类）
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuChangesBuilder {
+
+    private final MenuVersion menuVersion;
+
+    private final MenuChangeLog menuChangeLog;
+
+    private final MenuSnapshotHolder menuSnapshotHolder;
+
+    private final CategoryMapper categoryMapper;
+
+    /**
+     * 某个版本之后的修改
+     * @param since 客户端当前的版本号，没有的话返回整个菜单
+     * @return
+     */
+    public MenuChangesVO changesSince(Long since) {
+        long revision = menuVersion.current();
+        List<MenuChangeLog.Change> changes = since == null ? null : menuChangeLog.since(since, revision);
+        // 快照至少要包含到这个版本的修改
+        MenuSnapshot menu = menuSnapshotHolder.get(revision);
+        if (changes == null) {
+            return full(revision, menu);
+        }
+
+        Set<Long> categoryIds = new LinkedHashSet<>();
+        Set<Long> dishIds = new LinkedHashSet<>();
+        Set<Long> setmealIds = new LinkedHashSet<>();
+        for (MenuChangeLog.Change change : changes) {
+            switch (change.getType()) {
+                case CATEGORY:
+                    categoryIds.addAll(change.getIds());
+                    break;
+                case DISH:
+                    dishIds.addAll(change.getIds());
+                    break;
+                case SETMEAL:
+                    setmealIds.addAll(change.getIds());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        MenuChangesVO menuChangesVO = MenuChangesVO.builder()
+                .revision(revision)
+                .full(false)
+                .categories(new ArrayList<>())
+                .dishes(new ArrayList<>())
+                .setmeals(new ArrayList<>())
+                .deletedCategoryIds(new ArrayList<>())
+                .deletedDishIds(new ArrayList<>())
+                .deletedSetmealIds(new ArrayList<>())
+                .build();
+
+        // 分类不在快照中，有修改的时候才查询（只查询起售中的）
+        if (!categoryIds.isEmpty()) {
+            Map<Long, Category> categories = categoryMapper.list(null).stream()
+                    .collect(Collectors.toMap(Category::getId, Function.identity()));
+            for (Long id : categoryIds) {
+                Category category = categories.get(id);
+                if (category != null) {
+                    menuChangesVO.getCategories().add(category);
+                } else {
+                    menuChangesVO.getDeletedCategoryIds().add(id);
+                }
+            }
+        }
+        for (Long id : dishIds) {
+            Dish dish = menu.getOnSaleDish(id);
+            if (dish != null) {
+                menuChangesVO.getDishes().add(toDishVO(dish, menu));
+            } else {
+                menuChangesVO.getDeletedDishIds().add(id);
+            }
+        }
+        for (Long id : setmealIds) {
+            Setmeal setmeal = menu.getOnSaleSetmeal(id);
+            if (setmeal != null) {
+                menuChangesVO.getSetmeals().add(setmeal);
+            } else {
+                menuChangesVO.getDeletedSetmealIds().add(id);
+            }
+        }
+        return menuChangesVO;
+    }
+
+    private MenuChangesVO full(long revision, MenuSnapshot menu) {
+        List<DishVO> dishes = menu.getDishes().values().stream()
+                .filter(dish -> StatusConstant.ENABLE.equals(dish.getStatus()))
+                .sorted(Comparator.comparing(Dish::getId))
+                .map(dish -> toDishVO(dish, menu))
+                .collect(Collectors.toList());
+        List<Setmeal> setmeals = menu.getSetmeals().values().stream()
+                .filter(setmeal -> StatusConstant.ENABLE.equals(setmeal.getStatus()))
+                .sorted(Comparator.comparing(Setmeal::getId))
+                .collect(Collectors.toList());
+
+        return MenuChangesVO.builder()
+                .revision(revision)
+                .full(true)
+                .categories(categoryMapper.list(null))
+                .dishes(dishes)
+                .setmeals(setmeals)
+                .deletedCategoryIds(new ArrayList<>())
+                .deletedDishIds(new ArrayList<>())
+                .deletedSetmealIds(new ArrayList<>())
+                .build();
+    }
+
+    private static DishVO toDishVO(Dish dish, MenuSnapshot menu) {
+        DishVO dishVO = new DishVO();
+        BeanUtils.copyProperties(dish, dishVO);
+        dishVO.setFlavors(menu.getFlavors(dish.getId()));
+        return dishVO;
+    }
+
+}
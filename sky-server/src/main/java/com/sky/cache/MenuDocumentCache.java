@@ -0,0 +1,127 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Setmeal;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.result.Result;
+import com.sky.service.CategoryService;
+import com.sky.service.DishService;
+import com.sky.service.SetmealService;
+import com.sky.vo.MenuVO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 整个菜单（分类、菜品和口味、套餐）的json文档
+ * 每个菜单版本只序列化和gzip压缩一次，保存压缩之后的字节数组，请求的时候直接写出去
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuDocumentCache {
+
+    private final MenuVersion menuVersion;
+
+    private final CategoryService categoryService;
+
+    private final DishService dishService;
+
+    private final SetmealService setmealService;
+
+    private final JacksonObjectMapper objectMapper = new JacksonObjectMapper();
+
+    private volatile MenuDocument document;
+
+    /**
+     * 当前版本的etag，客户端带过来的If-None-Match和这个相同的话不需要再生成菜单
+     * @return
+     */
+    public String currentEtag() {
+        return etag(menuVersion.current());
+    }
+
+    /**
+     * 获取当前版本的菜单文档，版本变化了的话重新生成
+     * @return
+     */
+    public MenuDocument get() {
+        long version = menuVersion.current();
+        MenuDocument current = document;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = document;
+            if (current == null || current.getVersion() != version) {
+                current = build(version);
+                document = current;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 先拿到版本号再查询数据，生成期间菜单又修改了的话版本号会变化，下一次请求会重新生成
+     */
+    private MenuDocument build(long version) {
+        Map<String, Object> dishParams = new HashMap<>();
+        dishParams.put("status", StatusConstant.ENABLE);
+        Setmeal setmealFilter = Setmeal.builder()
+                .status(StatusConstant.ENABLE)
+                .build();
+
+        MenuVO menuVO = MenuVO.builder()
+                .version(version)
+                .categories(categoryService.list(null))
+                .dishes(dishService.listWithFlavor(dishParams))
+                .setmeals(setmealService.list(setmealFilter))
+                .build();
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Result.success(menuVO));
+            byte[] gzip = gzip(json);
+            log.info("生成菜单 版本{} 大小{} 压缩后{}", version, json.length, gzip.length);
+            return new MenuDocument(version, etag(version), gzip);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(long version) {
+        return "\"menu-" + version + "\"";
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class MenuDocument {
+
+        private final long version;
+
+        private final String etag;
+
+        // gzip压缩之后的json
+        private final byte[] gzip;
+
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.service.MenuSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 菜品和套餐的搜索索引（内存中的倒排索引）
+ * 名称和描述按单个字和相邻的两个字（bigram）切分，适合中文，不需要分词
+ * 搜索的时候对关键词的每个bigram求交集，再检查一下是否真的包含关键词，不用 like '%xx%' 扫描整张表
+ * 管理端修改之后按id增量更新；其他节点修改了菜单的时候由 MenuChangeLog 按修改记录中的id增量更新
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuSearchIndex implements MenuSearchService {
+
+    private final DishMapper dishMapper;
+
+    private final SetmealMapper setmealMapper;
+
+    private final Index<Dish> dishIndex = new Index<>(Dish::getId, Dish::getName, Dish::getDescription);
+
+    private final Index<Setmeal> setmealIndex = new Index<>(Setmeal::getId, Setmeal::getName, Setmeal::getDescription);
+
+    private volatile boolean loaded;
+
+    /**
+     * 搜索菜品（包括停售的）
+     * @param keyword
+     * @param nameOnly true只搜索名称，false名称和描述都搜索
+     * @return 名称匹配的排在前面
+     */
+    @Override
+    public List<Dish> searchDishes(String keyword, boolean nameOnly) {
+        ensureLoaded();
+        return dishIndex.search(keyword, nameOnly);
+    }
+
+    /**
+     * 搜索套餐（包括停售的）
+     * @param keyword
+     * @param nameOnly true只搜索名称，false名称和描述都搜索
+     * @return 名称匹配的排在前面
+     */
+    @Override
+    public List<Setmeal> searchSetmeals(String keyword, boolean nameOnly) {
+        ensureLoaded();
+        return setmealIndex.search(keyword, nameOnly);
+    }
+
+    /**
+     * 重新加载这些菜品（新增、修改、删除之后调用，数据库中已经没有的从索引中删除）
+     * @param ids
+     */
+    @Override
+    public void refreshDishes(Collection<Long> ids) {
+        if (!loaded || ids.isEmpty()) {
+            return;
+        }
+        List<Long> idList = new ArrayList<>(new HashSet<>(ids));
+        List<Dish> dishes = dishMapper.selectByIds(idList);
+        dishIndex.refresh(idList, dishes);
+    }
+
+    /**
+     * 重新加载这些套餐（新增、修改、删除之后调用，数据库中已经没有的从索引中删除）
+     * @param ids
+     */
+    @Override
+    public void refreshSetmeals(Collection<Long> ids) {
+        if (!loaded || ids.isEmpty()) {
+            return;
+        }
+        List<Long> idList = new ArrayList<>(new HashSet<>(ids));
+        List<Setmeal> setmeals = setmealMapper.selectByIds(idList);
+        setmealIndex.refresh(idList, setmeals);
+    }
+
+    /**
+     * 整个重新加载
+     */
+    public synchronized void rebuild() {
+        List<Dish> dishes = dishMapper.list(new HashMap<>());
+        List<Setmeal> setmeals = setmealMapper.list(new Setmeal());
+        dishIndex.reset(dishes);
+        setmealIndex.reset(setmeals);
+        loaded = true;
+        log.info("加载搜索索引 菜品{} 套餐{}", dishes.size(), setmeals.size());
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * 统一处理成小写并去掉空白字符
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        text.codePoints()
+                .filter(c -> !Character.isWhitespace(c))
+                .map(Character::toLowerCase)
+                .forEach(sb::appendCodePoint);
+        return sb.toString();
+    }
+
+    /**
+     * 切分成单个字和相邻的两个字
+     */
+    private static Set<String> tokens(String text) {
+        Set<String> tokens = new HashSet<>();
+        int[] codePoints = text.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            tokens.add(new String(codePoints, i, 1));
+            if (i + 1 < codePoints.length) {
+                tokens.add(new String(codePoints, i, 2));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 搜索关键词使用的token：只有一个字的时候用这个字，否则用所有的bigram
+     */
+    private static Set<String> queryTokens(String keyword) {
+        int[] codePoints = keyword.codePoints().toArray();
+        Set<String> tokens = new LinkedHashSet<>();
+        if (codePoints.length == 1) {
+            tokens.add(keyword);
+            return tokens;
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            tokens.add(new String(codePoints, i, 2));
+        }
+        return tokens;
+    }
+
+    /**
+     * 一种数据（菜品或套餐）的索引
+     * 倒排表使用并发的集合，读的时候不加锁；修改的时候加锁，保证同一个文档的token增删是完整的
+     */
+    private static class Index<T> {
+
+        private final Function<T, Long> idGetter;
+
+        private final Function<T, String> nameGetter;
+
+        private final Function<T, String> descriptionGetter;
+
+        private final Map<Long, T> documents = new ConcurrentHashMap<>();
+
+        // token -> 包含这个token的文档id
+        private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+        Index(Function<T, Long> idGetter, Function<T, String> nameGetter, Function<T, String> descriptionGetter) {
+            this.idGetter = idGetter;
+            this.nameGetter = nameGetter;
+            this.descriptionGetter = descriptionGetter;
+        }
+
+        synchronized void reset(List<T> list) {
+            documents.clear();
+            postings.clear();
+            list.forEach(this::put);
+        }
+
+        synchronized void refresh(List<Long> ids, List<T> list) {
+            ids.forEach(this::remove);
+            list.forEach(this::put);
+        }
+
+        private void put(T document) {
+            Long id = idGetter.apply(document);
+            documents.put(id, document);
+            for (String token : tokens(text(document))) {
+                postings.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+
+        private void remove(Long id) {
+            T document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (String token : tokens(text(document))) {
+                Set<Long> ids = postings.get(token);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(token);
+                    }
+                }
+            }
+        }
+
+        private String text(T document) {
+            return normalize(nameGetter.apply(document)) + "\n" + normalize(descriptionGetter.apply(document));
+        }
+
+        List<T> search(String keyword, boolean nameOnly) {
+            String query = normalize(keyword);
+            if (query.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            // 从最短的倒排表开始求交集
+            List<Set<Long>> lists = new ArrayList<>();
+            for (String token : queryTokens(query)) {
+                Set<Long> ids = postings.get(token);
+                if (ids == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            Set<Long> candidates = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+                candidates.retainAll(lists.get(i));
+            }
+
+            // bigram都包含不代表包含整个关键词，需要再检查一下
+            List<T> nameMatches = new ArrayList<>();
+            List<T> descriptionMatches = new ArrayList<>();
+            for (Long id : candidates) {
+                T document = documents.get(id);
+                if (document == null) {
+                    continue;
+                }
+                if (normalize(nameGetter.apply(document)).contains(query)) {
+                    nameMatches.add(document);
+                } else if (!nameOnly && normalize(descriptionGetter.apply(document)).contains(query)) {
+                    descriptionMatches.add(document);
+                }
+            }
+            Comparator<T> byId = Comparator.comparing(idGetter, Comparator.reverseOrder());
+            nameMatches.sort(byId);
+            descriptionMatches.sort(byId);
+            nameMatches.addAll(descriptionMatches);
+            return nameMatches;
+        }
+    }
+
+}
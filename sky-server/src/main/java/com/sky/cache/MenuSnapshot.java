@@ -0,0 +1,68 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.utils.LongKeyMap;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 菜单的只读快照（菜品、套餐、口味，按id索引）
+ * 创建之后不会再修改，菜单变化的时候整个替换
+ */
+@Getter
+public class MenuSnapshot {
+
+    // 加载快照的时候菜单的版本号
+    private final long revision;
+
+    // 菜品id -> 菜品
+    private final LongKeyMap<Dish> dishes;
+
+    // 套餐id -> 套餐
+    private final LongKeyMap<Setmeal> setmeals;
+
+    // 菜品id -> 口味
+    private final LongKeyMap<List<DishFlavor>> flavors;
+
+    public MenuSnapshot(long revision, LongKeyMap<Dish> dishes, LongKeyMap<Setmeal> setmeals, LongKeyMap<List<DishFlavor>> flavors) {
+        this.revision = revision;
+        this.dishes = dishes;
+        this.setmeals = setmeals;
+        this.flavors = flavors;
+    }
+
+    public Dish getDish(Long dishId) {
+        return dishes.get(dishId);
+    }
+
+    public Setmeal getSetmeal(Long setmealId) {
+        return setmeals.get(setmealId);
+    }
+
+    public List<DishFlavor> getFlavors(Long dishId) {
+        List<DishFlavor> dishFlavors = flavors.get(dishId);
+        return dishFlavors == null ? Collections.emptyList() : dishFlavors;
+    }
+
+    /**
+     * 起售中的菜品（不存在或者停售返回null）
+     */
+    public Dish getOnSaleDish(Long dishId) {
+        Dish dish = getDish(dishId);
+        return dish != null && StatusConstant.ENABLE.equals(dish.getStatus()) ? dish : null;
+    }
+
+    /**
+     * 起售中的套餐（不存在或者停售返回null）
+     */
+    public Setmeal getOnSaleSetmeal(Long setmealId) {
+        Setmeal setmeal = getSetmeal(setmealId);
+        return setmeal != null && StatusConstant.ENABLE.equals(setmeal.getStatus()) ? setmeal : null;
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.utils.LongKeyMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 持有当前的菜单快照
+ * 购物车和下单的时候从这里获取商品的名称、图片、价格，不用再查询菜品表和套餐表
+ * 管理端修改了菜品或套餐之后调用markStale，在后台线程重新加载，加载完成之后一次性替换（请求线程不用等待加载）
+ * 短时间内的多次修改只会排队一次加载，加载的时候读到的已经是最新的数据
+ * 获取快照的时候最多每秒和redis中的菜单版本号比较一次，丢失了修改的消息也只会使用一秒左右的旧价格
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuSnapshotHolder {
+
+    private final DishMapper dishMapper;
+
+    private final DishFlavorMapper dishFlavorMapper;
+
+    private final SetmealMapper setmealMapper;
+
+    private final MenuVersion menuVersion;
+
+    // 和redis中的版本号比较的间隔（毫秒）
+    private static final long VERSION_CHECK_INTERVAL_MILLIS = 1000;
+
+    private volatile MenuSnapshot snapshot;
+
+    // 上一次和redis中的版本号比较的时间
+    private final AtomicLong lastVersionCheck = new AtomicLong();
+
+    // 已经有一次重新加载在排队（还没有开始查询数据库），这时候再修改不用再排队
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    // 后台重新加载快照的线程
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "menu-snapshot-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 获取当前的菜单快照（第一次使用的时候加载）
+     * redis中的版本号比快照新的时候在后台重新加载，这次先返回当前的快照（每秒最多比较一次，只有一个线程去查询redis）
+     * @return
+     */
+    public MenuSnapshot get() {
+        MenuSnapshot current = loaded();
+        long now = System.currentTimeMillis();
+        long lastCheck = lastVersionCheck.get();
+        if (now - lastCheck < VERSION_CHECK_INTERVAL_MILLIS || !lastVersionCheck.compareAndSet(lastCheck, now)) {
+            return current;
+        }
+
+        long revision;
+        try {
+            revision = menuVersion.current();
+        } catch (Exception e) {
+            // redis出问题的时候继续使用当前的快照
+            log.warn("获取菜单版本号失败 {}", e.getMessage());
+            return current;
+        }
+        if (current.getRevision() < revision) {
+            rebuildAsync();
+        }
+        return current;
+    }
+
+    /**
+     * 获取不早于某个菜单版本的快照
+     * 其他节点修改了菜单，本节点还没有重新加载的时候，在这里同步加载（只用于必须和版本号对应的增量菜单）
+     * @param revision
+     * @return
+     */
+    public MenuSnapshot get(long revision) {
+        MenuSnapshot current = loaded();
+        if (current.getRevision() >= revision) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current.getRevision() < revision) {
+                current = load();
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+
+    private MenuSnapshot loaded() {
+        MenuSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 菜单已经修改，在后台重新加载快照
+     */
+    public void markStale() {
+        rebuildAsync();
+    }
+
+    /**
+     * 快照比这个版本旧的时候在后台重新加载（收到其他节点的修改记录时调用）
+     * @param revision
+     */
+    public void markStale(long revision) {
+        MenuSnapshot current = snapshot;
+        if (current != null && current.getRevision() < revision) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * 已经有加载在排队的时候直接返回，排队的那次加载开始之后才会读取数据库，能看到这次的修改
+     */
+    private void rebuildAsync() {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                rebuildPending.set(false);
+                try {
+                    synchronized (this) {
+                        snapshot = load();
+                    }
+                } catch (Exception e) {
+                    // 加载失败继续使用旧的快照，下一次比较版本号的时候还会再加载
+                    log.error("重新加载菜单快照失败", e);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuildPending.set(false);
+            log.warn("重新加载菜单快照的任务提交失败 {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 先拿到版本号再查询数据，加载期间菜单又修改了的话快照的版本号比实际的旧，之后还会再加载
+     */
+    private MenuSnapshot load() {
+        long revision = menuVersion.current();
+        List<Dish> dishList = dishMapper.list(new HashMap<>());
+        List<Setmeal> setmealList = setmealMapper.list(new Setmeal());
+        List<DishFlavor> flavorList = dishFlavorMapper.list();
+
+        Map<Long, Dish> dishes = new HashMap<>();
+        dishList.forEach(dish -> dishes.put(dish.getId(), dish));
+
+        Map<Long, Setmeal> setmeals = new HashMap<>();
+        setmealList.forEach(setmeal -> setmeals.put(setmeal.getId(), setmeal));
+
+        Map<Long, List<DishFlavor>> flavors = new HashMap<>();
+        flavorList.forEach(flavor -> flavors.computeIfAbsent(flavor.getDishId(), k -> new ArrayList<>()).add(flavor));
+        flavors.replaceAll((dishId, list) -> Collections.unmodifiableList(list));
+
+        log.info("加载菜单快照 版本{} 菜品{} 套餐{}", revision, dishes.size(), setmeals.size());
+        return new MenuSnapshot(revision, LongKeyMap.from(dishes), LongKeyMap.from(setmeals), LongKeyMap.from(flavors));
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.sky.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 菜单的版本号（保存在redis中，所有节点共用）
+ * 管理端每次修改分类、菜品、套餐之后加一，客户端和各种菜单缓存根据版本号判断数据是否变化了
+ */
+@Component
+@RequiredArgsConstructor
+public class MenuVersion {
+
+    private static final String KEY = "menu_version";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 当前的版本号
+     * @return
+     */
+    public long current() {
+        String version = stringRedisTemplate.opsForValue().get(KEY);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    /**
+     * 菜单修改了，版本号加一
+     * @return 新的版本号
+     */
+    public long increment() {
+        Long version = stringRedisTemplate.opsForValue().increment(KEY);
+        return version == null ? 0 : version;
+    }
+
+}
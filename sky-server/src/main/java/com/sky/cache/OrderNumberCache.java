@@ -0,0 +1,59 @@
+package com.sky.cache;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 订单id -> 订单号 的本地读缓存
+ * 订单号在下单之后就不会再变化了，所以不需要失效，只按LRU淘汰
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderNumberCache {
+
+    private static final int MAX_SIZE = 10000;
+
+    private final OrderMapper orderMapper;
+
+    private final Map<Long, String> cache = new LinkedHashMap<Long, String>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * 下单的时候直接放进缓存
+     * @param id
+     * @param number
+     */
+    public synchronized void put(Long id, String number) {
+        cache.put(id, number);
+    }
+
+    /**
+     * 获取订单号，缓存中没有的话查询数据库
+     * @param id
+     * @return 订单不存在的话返回null
+     */
+    public String get(Long id) {
+        synchronized (this) {
+            String number = cache.get(id);
+            if (number != null) {
+                return number;
+            }
+        }
+        Orders order = orderMapper.getById(id);
+        if (order == null) {
+            return null;
+        }
+        put(id, order.getNumber());
+        return order.getNumber();
+    }
+
+}
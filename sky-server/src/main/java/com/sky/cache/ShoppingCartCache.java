@@ -0,0 +1,328 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存在redis hash中的购物车（每个用户一个hash）
+ * 每个商品在hash中有两个字段：
+ *   n:商品key -> 数量
+ *   i:商品key -> 商品快照（名称、图片、价格等，json格式）
+ * 修改购物车的操作都是一个lua脚本（resources/lua/cart_*.lua），读取、修改和标记修改原子的执行，并发的增减不会丢失或者出现0、负数
+ * 修改过的用户id放到一个set中，由定时任务批量同步回shopping_cart表（下单的时候也会立即同步）
+ * hash设置了过期时间（sky.shopping-cart.expire-days），每次修改都会延长，长时间不用的购物车会自动删除
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ShoppingCartCache {
+
+    private static final String KEY_PREFIX = "shopping_cart_";
+
+    // 修改过还没有同步到数据库的用户id
+    private static final String DIRTY_KEY = "shopping_cart_dirty";
+
+    private static final String NUMBER_PREFIX = "n:";
+
+    private static final String ITEM_PREFIX = "i:";
+
+    // 标记这个用户的购物车已经从数据库加载过了（购物车为空的时候也不用再查询数据库）
+    private static final String LOADED_FIELD = "loaded";
+
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = script("lua/cart_increment.lua");
+
+    private static final DefaultRedisScript<Long> DECREMENT_SCRIPT = script("lua/cart_decrement.lua");
+
+    private static final DefaultRedisScript<Long> SET_SCRIPT = script("lua/cart_set.lua");
+
+    private static final DefaultRedisScript<Long> CLEAN_SCRIPT = script("lua/cart_clean.lua");
+
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = script("lua/cart_load.lua");
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ShoppingCartMapper shoppingCartMapper;
+
+    private final ShoppingCartProperties shoppingCartProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public boolean isEnabled() {
+        return shoppingCartProperties.isRedisEnabled();
+    }
+
+    /**
+     * 购物车中一个商品的key：菜品是 菜品id + 口味，套餐是 套餐id
+     */
+    public static String itemKey(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null) {
+            return "dish:" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor);
+        }
+        return "setmeal:" + setmealId;
+    }
+
+    /**
+     * 增加商品的数量，购物车中还没有这个商品的时候需要传入商品快照
+     * @param userId
+     * @param item 商品快照（购物车中已经有这个商品的时候可以为null）
+     * @param itemKey
+     * @param delta
+     * @return 增加之后的数量，没有传入快照并且购物车中没有这个商品的时候返回-1（没有修改购物车）
+     */
+    public long increment(Long userId, String itemKey, ShoppingCart item, long delta) {
+        ensureLoaded(userId);
+        return execute(INCREMENT_SCRIPT, userId,
+                itemKey, item == null ? "" : JSON.toJSONString(item), String.valueOf(delta));
+    }
+
+    /**
+     * 商品的数量减一，减到0的时候从购物车中删除
+     * @return 减少之后的数量
+     */
+    public long decrement(Long userId, String itemKey) {
+        ensureLoaded(userId);
+        return execute(DECREMENT_SCRIPT, userId, itemKey);
+    }
+
+    /**
+     * 批量增加商品的数量（再来一单），一次执行一个脚本
+     * @param userId
+     * @param items 商品快照，number是要增加的数量
+     */
+    public void incrementAll(Long userId, List<ShoppingCart> items) {
+        ensureLoaded(userId);
+        List<String> args = new ArrayList<>();
+        for (ShoppingCart item : items) {
+            args.add(itemKey(item.getDishId(), item.getSetmealId(), item.getDishFlavor()));
+            args.add(snapshot(item));
+            args.add(String.valueOf(item.getNumber()));
+        }
+        execute(INCREMENT_SCRIPT, userId, args.toArray(new String[0]));
+    }
+
+    /**
+     * 批量把商品的数量设置为目标数量，一次执行一个脚本
+     * @param userId
+     * @param items key是商品key，value的number是目标数量，小于等于0的从购物车中删除
+     */
+    public void setAll(Long userId, Map<String, ShoppingCart> items) {
+        ensureLoaded(userId);
+        List<String> args = new ArrayList<>();
+        args.add("0");
+        items.forEach((itemKey, item) -> {
+            args.add(itemKey);
+            args.add(snapshot(item));
+            args.add(String.valueOf(item.getNumber()));
+        });
+        execute(SET_SCRIPT, userId, args.toArray(new String[0]));
+    }
+
+    /**
+     * 修改购物车中商品的快照（例如价格变化了），购物车中已经没有这个商品的时候不修改
+     */
+    public void updateItem(Long userId, String itemKey, ShoppingCart item) {
+        execute(SET_SCRIPT, userId, "1", itemKey, snapshot(item), "");
+    }
+
+    /**
+     * 从购物车中删除这个商品
+     */
+    public void remove(Long userId, String itemKey) {
+        execute(SET_SCRIPT, userId, "1", itemKey, "", "0");
+    }
+
+    /**
+     * 查看购物车
+     */
+    public List<ShoppingCart> list(Long userId) {
+        ensureLoaded(userId);
+        return toShoppingCarts(userId, hash().entries(key(userId)));
+    }
+
+    /**
+     * 清空购物车
+     */
+    public void clean(Long userId) {
+        execute(CLEAN_SCRIPT, userId);
+    }
+
+    /**
+     * 把用户的购物车同步到数据库（整个替换）
+     */
+    public void flush(Long userId) {
+        List<ShoppingCart> shoppingCarts = list(userId);
+        transactionTemplate.executeWithoutResult(status -> {
+            shoppingCartMapper.deleteByUserId(userId);
+            if (!shoppingCarts.isEmpty()) {
+                shoppingCartMapper.insertBatch(shoppingCarts);
+            }
+        });
+    }
+
+    /**
+     * 把修改过的购物车批量同步到数据库
+     * @return 同步的用户数量
+     */
+    public int flushDirty() {
+        List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, shoppingCartProperties.getFlushBatchSize());
+        if (userIds == null || userIds.isEmpty()) {
+            return 0;
+        }
+        for (String userId : userIds) {
+            try {
+                flush(Long.valueOf(userId));
+            } catch (Exception e) {
+                // 同步失败的放回去，下一次再同步
+                log.error("购物车同步到数据库失败 {} {}", userId, e.getMessage());
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId);
+            }
+        }
+        return userIds.size();
+    }
+
+    /**
+     * redis中没有这个用户的购物车的时候从数据库加载
+     * 写入在脚本中执行，已经被其他请求加载、修改或者清空了的时候不会用数据库中的旧数据覆盖
+     */
+    private void ensureLoaded(Long userId) {
+        if (hash().hasKey(key(userId), LOADED_FIELD)) {
+            return;
+        }
+
+        ShoppingCart shoppingCartFilter = ShoppingCart.builder()
+                .userId(userId)
+                .build();
+        List<ShoppingCart> shoppingCarts = shoppingCartMapper.list(shoppingCartFilter);
+        List<String> args = new ArrayList<>();
+        for (ShoppingCart shoppingCart : shoppingCarts) {
+            args.add(itemKey(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
+            args.add(snapshot(shoppingCart));
+            args.add(String.valueOf(shoppingCart.getNumber()));
+        }
+        execute(LOAD_SCRIPT, userId, args.toArray(new String[0]));
+    }
+
+    private List<ShoppingCart> toShoppingCarts(Long userId, Map<String, String> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, String> items = new HashMap<>();
+        entries.forEach((field, value) -> {
+            if (field.startsWith(ITEM_PREFIX)) {
+                items.put(field.substring(ITEM_PREFIX.length()), value);
+            }
+        });
+
+        List<ShoppingCart> shoppingCarts = new ArrayList<>();
+        entries.forEach((field, value) -> {
+            if (!field.startsWith(NUMBER_PREFIX)) {
+                return;
+            }
+            String item = items.get(field.substring(NUMBER_PREFIX.length()));
+            int number = Integer.parseInt(value);
+            if (item == null || number <= 0) {
+                return;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject(item, ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(number);
+            shoppingCarts.add(shoppingCart);
+        });
+        shoppingCarts.sort((a, b) -> {
+            if (a.getCreateTime() == null || b.getCreateTime() == null) {
+                return 0;
+            }
+            return a.getCreateTime().compareTo(b.getCreateTime());
+        });
+        return shoppingCarts;
+    }
+
+    /**
+     * 过滤出redis中已经没有购物车的用户（一段时间内没有使用过购物车）
+     * @param userIds
+     * @return
+     */
+    public List<Long> filterInactive(List<Long> userIds) {
+        List<Object> exists = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+            userIds.forEach(userId -> stringRedisConnection.exists(key(userId)));
+            return null;
+        });
+        List<Long> inactive = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            if (!Boolean.TRUE.equals(exists.get(i))) {
+                inactive.add(userIds.get(i));
+            }
+        }
+        return inactive;
+    }
+
+    /**
+     * 等待同步到数据库的用户数量
+     */
+    public Long dirtySize() {
+        return stringRedisTemplate.opsForSet().size(DIRTY_KEY);
+    }
+
+    /**
+     * 执行修改购物车的脚本，KEYS是购物车的key和修改过的用户id的set，前两个参数是用户id和过期时间
+     */
+    private long execute(DefaultRedisScript<Long> script, Long userId, String... args) {
+        String[] argv = new String[args.length + 2];
+        argv[0] = String.valueOf(userId);
+        argv[1] = String.valueOf(TimeUnit.DAYS.toSeconds(shoppingCartProperties.getExpireDays()));
+        System.arraycopy(args, 0, argv, 2, args.length);
+        Long result = stringRedisTemplate.execute(script, Arrays.asList(key(userId), DIRTY_KEY), (Object[]) argv);
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * 保存在hash中的商品快照（不包含id和数量）
+     */
+    private static String snapshot(ShoppingCart item) {
+        ShoppingCart snapshot = new ShoppingCart();
+        BeanUtils.copyProperties(item, snapshot);
+        snapshot.setId(null);
+        snapshot.setNumber(null);
+        return JSON.toJSONString(snapshot);
+    }
+
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    private HashOperations<String, String, String> hash() {
+        return stringRedisTemplate.opsForHash();
+    }
+
+    private String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+}
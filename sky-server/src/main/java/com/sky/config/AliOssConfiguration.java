@@ -11,14 +11,16 @@ import org.springframework.context.annotation.Configuration;
 @Slf4j
 public class AliOssConfiguration {
 
-    @Bean
+    @Bean(destroyMethod = "shutdown") // 整个应用共用一个OSSClient，关闭的时候释放连接
     @ConditionalOnMissingBean // 只用配置一个就行了
     public AliOssUtil aliOssUtil(AliOssProperties aliOssProperties) {
         log.info("阿里云oss服务连接上");
         return new AliOssUtil(aliOssProperties.getEndpoint(),
                 aliOssProperties.getAccessKeyId(),
                 aliOssProperties.getAccessKeySecret(),
-                aliOssProperties.getBucketName());
+                aliOssProperties.getBucketName(),
+                aliOssProperties.getMultipartThreshold(),
+                aliOssProperties.getPartSize());
     }
 
 }
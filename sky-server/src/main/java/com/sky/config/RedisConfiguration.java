@@ -1,26 +1,78 @@
 package com.sky.config;
 
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuChangeLog;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @Slf4j
 public class RedisConfiguration {
 
+    /**
+     * value的序列化器，默认使用smile，可以读取之前jdk序列化的数据
+     * @param valueFormat smile 或 jdk
+     * @return
+     */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public CompactRedisSerializer compactRedisSerializer(@Value("${sky.redis.value-format:smile}") String valueFormat) {
+        log.info("redis value序列化格式 {}", valueFormat);
+        return new CompactRedisSerializer(!"jdk".equalsIgnoreCase(valueFormat));
+    }
+
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory, CompactRedisSerializer compactRedisSerializer) {
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         // 设置连接工厂
         redisTemplate.setConnectionFactory(redisConnectionFactory);
 
         // 设置键（key）的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+
+        // 设置值（value）的序列化器
+        redisTemplate.setValueSerializer(compactRedisSerializer);
+        redisTemplate.setHashValueSerializer(compactRedisSerializer);
 
         return redisTemplate;
     }
 
+    /**
+     * spring cache（@Cacheable）使用的redis缓存也使用同样的序列化器
+     * @param compactRedisSerializer
+     * @return
+     */
+    @Bean
+    public RedisCacheConfiguration redisCacheConfiguration(CompactRedisSerializer compactRedisSerializer) {
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(compactRedisSerializer));
+    }
+
+    /**
+     * 订阅删除菜单缓存的消息，每个节点收到之后删除自己的本地缓存
+     * @param redisConnectionFactory
+     * @param menuCache
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                        MenuCache menuCache,
+                                                                        MenuChangeLog menuChangeLog) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(menuCache, new ChannelTopic(MenuCache.CHANNEL));
+        container.addMessageListener(menuChangeLog, new ChannelTopic(MenuChangeLog.CHANNEL));
+        return container;
+    }
+
 }
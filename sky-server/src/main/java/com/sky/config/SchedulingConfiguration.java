@@ -0,0 +1,26 @@
+package com.sky.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * 定时任务的线程池
+ * 默认只有一个线程，清理购物车这种耗时的任务会让催单推送、购物车同步这些任务一直等待
+ */
+@Configuration
+@Slf4j
+public class SchedulingConfiguration {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${sky.task.pool-size:4}") int poolSize) {
+        log.info("定时任务线程池大小 {}", poolSize);
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(poolSize);
+        taskScheduler.setThreadNamePrefix("sky-task-");
+        return taskScheduler;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.sky.config;
+
+import com.sky.properties.StorageProperties;
+import com.sky.storage.FileStorage;
+import com.sky.storage.LocalFileStorage;
+import com.sky.storage.OssFileStorage;
+import com.sky.utils.AliOssUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * 根据 sky.storage.type 选择文件存储，默认使用阿里云oss
+ */
+@Configuration
+@Slf4j
+public class StorageConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "sky.storage", name = "type", havingValue = "local")
+    public LocalFileStorage localFileStorage(StorageProperties storageProperties) throws IOException {
+        return new LocalFileStorage(storageProperties.getLocalRoot(), storageProperties.getLocalUrlPrefix());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(FileStorage.class)
+    public FileStorage ossFileStorage(AliOssUtil aliOssUtil) {
+        return new OssFileStorage(aliOssUtil);
+    }
+
+}
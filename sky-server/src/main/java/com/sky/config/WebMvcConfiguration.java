@@ -2,6 +2,7 @@ package com.sky.config;
 
 import com.sky.interceptor.JwtTokenAdminInterceptor;
 import com.sky.interceptor.JwtTokenUserInterceptor;
+import com.sky.interceptor.RateLimitInterceptor;
 import com.sky.json.JacksonObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +34,8 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
 
     private final JwtTokenUserInterceptor jwtTokenUserInterceptor;
 
+    private final RateLimitInterceptor rateLimitInterceptor;
+
     /**
      * 注册自定义拦截器
      * 只有登录是不用验证的，其他的handle都需要进行验证
@@ -48,6 +51,10 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
                 .addPathPatterns("/user/**")
                 .excludePathPatterns("/user/user/login")
                 .excludePathPatterns("/user/shop/status");
+
+        // 限流要在jwt校验之后，才能按照用户id进行限流
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/user/**");
     }
 
     /**
@@ -1,5 +1,8 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuChangedEvent;
+import com.sky.constant.MessageConstant;
 import com.sky.dto.CategoryDTO;
 import com.sky.dto.CategoryPageQueryDTO;
 import com.sky.entity.Category;
@@ -10,8 +13,12 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.constraints.Size;
+import java.util.Collections;
 import java.util.List;
 
 @RestController("adminCategoryController")
@@ -19,10 +26,14 @@ import java.util.List;
 @Api(tags = "管理端-分类相关接口")
 @Slf4j
 @RequiredArgsConstructor
+@Validated
 public class CategoryController {
 
     private final CategoryService categoryService;
 
+    // 分类修改之后发布菜单修改事件（记录修改了哪个分类，菜单的版本号加一）
+    private final ApplicationEventPublisher eventPublisher;
+
     /**
      * 新增分类
      * @param categoryDTO
@@ -33,6 +44,8 @@ public class CategoryController {
     public Result<String> save(@RequestBody CategoryDTO categoryDTO){
         log.info("新增分类：{}", categoryDTO);
         categoryService.save(categoryDTO);
+        // 新增的分类默认是禁用的，客户端看不到，只需要版本号加一
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.CATEGORY, Collections.emptyList()));
         return Result.success();
     }
 
@@ -59,6 +72,7 @@ public class CategoryController {
     public Result<String> deleteById(Long id){
         log.info("删除分类：{}", id);
         categoryService.deleteById(id);
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.CATEGORY, Collections.singletonList(id)));
         return Result.success();
     }
 
@@ -71,6 +85,7 @@ public class CategoryController {
     @ApiOperation("修改分类")
     public Result<String> update(@RequestBody CategoryDTO categoryDTO){
         categoryService.update(categoryDTO);
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.CATEGORY, Collections.singletonList(categoryDTO.getId())));
         return Result.success();
     }
 
@@ -84,6 +99,21 @@ public class CategoryController {
     @ApiOperation("启用禁用分类")
     public Result<String> startOrStop(@PathVariable("status") Integer status, Long id){
         categoryService.startOrStop(status,id);
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.CATEGORY, Collections.singletonList(id)));
+        return Result.success();
+    }
+
+    /**
+     * 批量启用、禁用分类
+     * @param status
+     * @param ids
+     * @return
+     */
+    @PostMapping("/status/{status}/batch")
+    @ApiOperation("批量启用禁用分类")
+    public Result<String> startOrStopBatch(@PathVariable("status") Integer status, @RequestParam @Size(min = 1, max = 100, message = MessageConstant.BATCH_SIZE_INVALID) List<Long> ids){
+        categoryService.startOrStopBatch(status, ids);
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.CATEGORY, ids));
         return Result.success();
     }
 
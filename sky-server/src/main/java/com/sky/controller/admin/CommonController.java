@@ -2,7 +2,7 @@ package com.sky.controller.admin;
 
 import com.sky.constant.MessageConstant;
 import com.sky.result.Result;
-import com.sky.utils.AliOssUtil;
+import com.sky.storage.FileStorage;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
@@ -13,7 +13,9 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 @RestController
 @RequestMapping("admin/common")
@@ -22,10 +24,14 @@ import java.util.UUID;
 @Api(tags = "通用接口")
 public class CommonController {
 
-    private final AliOssUtil aliOssUtil;
+    // 阿里云oss或者本地磁盘，由 sky.storage.type 决定
+    private final FileStorage fileStorage;
 
     /**
      * 上传文件
+     * 文件内容的sha256作为文件名，同一张图片重复上传的时候不再保存，直接返回原来的地址
+     * 上传的文件由spring保存在临时文件中，计算sha256和上传都是从临时文件中流式读取，不会把整个文件读到内存中
+     * 只允许上传图片（扩展名在 FileStorage.ALLOWED_EXTENSIONS 中）
      * @param file
      * @return
      */
@@ -34,13 +40,24 @@ public class CommonController {
     public Result<String> upload(MultipartFile file) {
         log.info("文件上传 {}", file.getOriginalFilename());
 
+        String originalFilename = file.getOriginalFilename();
+        int lastIndex = originalFilename == null ? -1 : originalFilename.lastIndexOf(".");
+        String extension = lastIndex < 0 ? "" : originalFilename.substring(lastIndex + 1).toLowerCase();
+        if (!FileStorage.ALLOWED_EXTENSIONS.contains(extension)) {
+            log.info("不允许上传的文件类型 {}", originalFilename);
+            return Result.error(MessageConstant.UPLOAD_FILE_TYPE_NOT_ALLOWED);
+        }
+
         try {
-            String originalFilename = file.getOriginalFilename();
-            int lastIndex = originalFilename.lastIndexOf(".");
-            // 为了防止名称一致而导致的文件覆盖
-            String objectName = UUID.randomUUID() + originalFilename.substring(lastIndex);
+            // 内容相同的文件名称也相同，不会出现不同的文件互相覆盖
+            String objectName = sha256(file) + "." + extension;
+
+            if (fileStorage.exists(objectName)) {
+                log.info("文件已经存在，不再上传 {}", objectName);
+                return Result.success(fileStorage.url(objectName));
+            }
             // 返回给前端的图片访问地址
-            String fileUrl = aliOssUtil.upload(file.getBytes(), objectName);
+            String fileUrl = fileStorage.save(file, file.getSize(), file.getContentType(), objectName);
             return Result.success(fileUrl);
         } catch (IOException e) {
             log.error("文件上传失败 {}", e.getMessage());
@@ -48,4 +65,28 @@ public class CommonController {
         return Result.error(MessageConstant.UPLOAD_FAILED);
     }
 
+    /**
+     * 流式计算文件内容的sha256（十六进制）
+     */
+    private static String sha256(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = file.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
 }
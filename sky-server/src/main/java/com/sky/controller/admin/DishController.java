@@ -1,5 +1,8 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuChangedEvent;
+import com.sky.constant.MessageConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -11,9 +14,14 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.constraints.Size;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -22,19 +30,21 @@ import java.util.Set;
 @Api(tags = "菜品接口")
 @Slf4j
 @RequiredArgsConstructor
+@Validated
 public class DishController {
 
     private final DishService dishService;
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    // 修改之后发布菜单修改事件，由MenuChangeListener统一刷新缓存、搜索索引和菜单快照
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
-     * 用于统一清理redis的缓存数据
-     * @param pattern
+     * 用于统一刷新这些分类的菜品缓存（在后台重新加载好之后再切换，用户不会读到空的缓存）
+     * @param ids 修改了的菜品
+     * @param categoryIds 涉及的分类
      */
-    private void cacheClean(String pattern) {
-        Set<String> keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+    private void cacheClean(List<Long> ids, Collection<Long> categoryIds) {
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.DISH, ids, categoryIds));
     }
 
     /**
@@ -47,9 +57,8 @@ public class DishController {
     public Result saveWithFlavor(@RequestBody DishDTO dishDTO) {
         dishService.saveWithFlavor(dishDTO);
 
-        // 清理缓存数据，因为这个分类新增了一个菜品，前台展示的时候是没有这条数据的，所以要全部清理(但是只是涉及一个分类)
-        String key = "dish_" + dishDTO.getCategoryId();
-        cacheClean(key);
+        // 清理缓存数据，因为这个分类新增了一个菜品，前台展示的时候是没有这条数据的(只是涉及一个分类)
+        cacheClean(Collections.singletonList(dishDTO.getId()), Collections.singletonList(dishDTO.getCategoryId()));
 
         return Result.success();
     }
@@ -74,9 +83,10 @@ public class DishController {
     @DeleteMapping
     @ApiOperation("批量删除菜品")
     public Result delete(@RequestParam List<Long> ids) {
+        // 可能会涉及多个分类，删除之前先查出来，只清理这些分类
+        List<Long> categoryIds = dishService.listCategoryIds(ids);
         dishService.deleteBatch(ids);
-        // 可能会涉及多个分类，为了不查询数据库，所以全部删除
-        cacheClean("dish_*");
+        cacheClean(ids, categoryIds);
         return Result.success();
     }
 
@@ -100,9 +110,12 @@ public class DishController {
     @PutMapping()
     @ApiOperation("修改菜品信息")
     public Result updateDishWithFlavor(@RequestBody DishDTO dishDTO) {
+        // 可能会涉及一个或两个分类（修改了分类的话原来的分类也要清理）
+        Set<Long> categoryIds = new HashSet<>(dishService.listCategoryIds(Collections.singletonList(dishDTO.getId())));
+        categoryIds.add(dishDTO.getCategoryId());
         dishService.updateDishWithFlavor(dishDTO);
-        // 可能会涉及一个或两个分类，为了不查询数据库，所以全部删除
-        cacheClean("dish_*");
+        // 包含这个菜品的套餐详情在事件处理中一起刷新
+        cacheClean(Collections.singletonList(dishDTO.getId()), categoryIds);
         return Result.success();
     }
 
@@ -115,8 +128,25 @@ public class DishController {
     @ApiOperation("启用禁用分类")
     public Result<String> startOrStop(@PathVariable("status") Integer status, Long id){
         dishService.startOrStop(status,id);
-        // 这里好像只涉及一个分类吧(但是这个分类要查询数据库...)
-        cacheClean("dish_*");
+        // 只涉及这个菜品所在的分类
+        List<Long> ids = Collections.singletonList(id);
+        cacheClean(ids, dishService.listCategoryIds(ids));
+        return Result.success();
+    }
+
+    /**
+     * 批量禁用启用（打烊的时候一次停售很多菜品）
+     * 只修改一次数据库，菜单快照、缓存也只刷新一次
+     * @param status
+     * @param ids
+     * @return
+     */
+    @PostMapping("/status/{status}/batch")
+    @ApiOperation("批量启用禁用菜品")
+    public Result<String> startOrStopBatch(@PathVariable("status") Integer status, @RequestParam @Size(min = 1, max = 100, message = MessageConstant.BATCH_SIZE_INVALID) List<Long> ids) {
+        dishService.startOrStopBatch(status, ids);
+        // 只涉及这些菜品所在的分类
+        cacheClean(ids, dishService.listCategoryIds(ids));
         return Result.success();
     }
 
@@ -1,5 +1,8 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuChangedEvent;
+import com.sky.constant.MessageConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.result.PageResult;
@@ -9,20 +12,39 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.constraints.Size;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("admin/setmeal")
 @Api(tags = "套餐管理接口")
 @Slf4j
 @RequiredArgsConstructor
+@Validated
 public class SetmealController {
 
     private final SetmealService setmealService;
 
+    // 修改之后发布菜单修改事件，由MenuChangeListener统一刷新缓存、搜索索引和菜单快照
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 刷新这些套餐和涉及的分类的缓存（在后台重新加载好之后再切换）
+     * @param ids 修改了的套餐
+     * @param categoryIds 涉及的分类
+     */
+    private void cacheClean(List<Long> ids, Collection<Long> categoryIds) {
+        eventPublisher.publishEvent(new MenuChangedEvent(MenuChangeLog.Type.SETMEAL, ids, categoryIds));
+    }
+
     /**
      * 保存套餐并且要记录与之相关的菜品
      * @param setmealDTO
@@ -30,9 +52,9 @@ public class SetmealController {
      */
     @PostMapping
     @ApiOperation("新增套餐")
-    @CacheEvict(cacheNames = "setmealCache", key = "#setmealDTO.categoryId")
     public Result save(@RequestBody SetmealDTO setmealDTO) {
         setmealService.saveWithDish(setmealDTO);
+        cacheClean(Collections.singletonList(setmealDTO.getId()), Collections.singletonList(setmealDTO.getCategoryId()));
         return Result.success();
     }
 
@@ -55,9 +77,11 @@ public class SetmealController {
      */
     @DeleteMapping
     @ApiOperation("批量删除套餐")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result delete(@RequestParam List<Long> ids) {
+        // 删除之前先查出涉及的分类，只清理这些分类的缓存
+        List<Long> categoryIds = setmealService.listCategoryIds(ids);
         setmealService.deleteBatch(ids);
+        cacheClean(ids, categoryIds);
         return Result.success();
     }
 
@@ -80,9 +104,12 @@ public class SetmealController {
      */
     @PutMapping
     @ApiOperation("修改套餐")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result update(@RequestBody SetmealDTO setmealDTO) {
+        // 修改了分类的话原来的分类也要清理
+        Set<Long> categoryIds = new HashSet<>(setmealService.listCategoryIds(Collections.singletonList(setmealDTO.getId())));
+        categoryIds.add(setmealDTO.getCategoryId());
         setmealService.update(setmealDTO);
+        cacheClean(Collections.singletonList(setmealDTO.getId()), categoryIds);
         return Result.success();
     }
 
@@ -94,11 +121,26 @@ public class SetmealController {
      */
     @PostMapping("/status/{status}")
     @ApiOperation("状态启用或是禁止")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result startOrStop(@PathVariable Integer status, Long id) {
         setmealService.startOrstop(status, id);
+        List<Long> ids = Collections.singletonList(id);
+        cacheClean(ids, setmealService.listCategoryIds(ids));
         return Result.success();
     }
 
+    /**
+     * 套餐批量启用或是禁用
+     * 只修改一次数据库，菜单快照、缓存也只刷新一次
+     * @param status
+     * @param ids
+     * @return
+     */
+    @PostMapping("/status/{status}/batch")
+    @ApiOperation("批量启用或是禁止")
+    public Result startOrStopBatch(@PathVariable Integer status, @RequestParam @Size(min = 1, max = 100, message = MessageConstant.BATCH_SIZE_INVALID) List<Long> ids) {
+        setmealService.startOrStopBatch(status, ids);
+        cacheClean(ids, setmealService.listCategoryIds(ids));
+        return Result.success();
+    }
 
 }
@@ -1,21 +1,18 @@
 package com.sky.controller.user;
 
-import com.sky.constant.StatusConstant;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuCacheWarmer;
 import com.sky.result.Result;
-import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController("userDishController")
 @RequestMapping("user/dish")
@@ -24,9 +21,9 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class DishController {
 
-    private final DishService dishService;
+    private final MenuCache menuCache;
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final MenuCacheWarmer menuCacheWarmer;
 
     /**
      * 根据分类id查询菜品
@@ -37,20 +34,8 @@ public class DishController {
     public Result<List<DishVO>> list(Long categoryId) {
         log.info("根据分类id查询菜品{}", categoryId);
 
-        // 热点数据加上缓存
-        String key = "dish_" + categoryId;
-        List<DishVO> dishList = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if (dishList != null && dishList.size() > 0) {
-            return Result.success(dishList);
-        }
-
-        // 把分类的条件id和在销售中这两个条件封装到Dish中(这里要注意了，当时我封装的是map)
-        Map<String, Object> params = new HashMap<>();
-        params.put("categoryId", categoryId);
-        params.put("status", StatusConstant.ENABLE);
-
-        dishList = dishService.listWithFlavor(params);
-        redisTemplate.opsForValue().set(key, dishList);
+        // 热点数据加上缓存（本地缓存 + redis）
+        List<DishVO> dishList = menuCache.get(MenuCache.dishKey(categoryId), () -> menuCacheWarmer.loadDishes(categoryId));
         return Result.success(dishList);
     }
 
@@ -0,0 +1,117 @@
+package com.sky.controller.user;
+
+import com.sky.cache.MenuChangesBuilder;
+import com.sky.cache.MenuDocumentCache;
+import com.sky.result.Result;
+import com.sky.vo.MenuChangesVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+@RestController
+@RequestMapping("user/menu")
+@Api(tags = "C端-菜单接口")
+@Slf4j
+@RequiredArgsConstructor
+public class MenuController {
+
+    private final MenuDocumentCache menuDocumentCache;
+
+    private final MenuChangesBuilder menuChangesBuilder;
+
+    /**
+     * 一次获取整个菜单（分类、菜品和口味、套餐）
+     * 菜单没有变化的话返回304，客户端使用本地保存的菜单
+     * @param ifNoneMatch
+     * @param acceptEncoding
+     * @param response
+     */
+    @GetMapping
+    @ApiOperation("获取整个菜单")
+    public void menu(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                     HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        // 菜单没有变化，不需要生成菜单
+        String etag = menuDocumentCache.currentEtag();
+        if (etagMatches(ifNoneMatch, etag)) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        MenuDocumentCache.MenuDocument document = menuDocumentCache.get();
+        response.setHeader(HttpHeaders.ETAG, document.getEtag());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        ServletOutputStream out = response.getOutputStream();
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setContentLength(document.getGzip().length);
+            out.write(document.getGzip());
+        } else {
+            // 很少有客户端不支持gzip，这种情况下解压之后再返回
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(document.getGzip()))) {
+                StreamUtils.copy(in, out);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * If-None-Match可以是逗号分隔的多个etag，或者是*
+     * 经过代理（例如nginx压缩）的时候etag可能被改成弱etag（W/"..."），GET请求按弱比较，去掉W/之后再比较
+     * @param ifNoneMatch
+     * @param etag 当前的etag
+     * @return
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取某个版本之后修改了的分类、菜品、套餐（包括删除和停售的id）
+     * 客户端的版本太旧（修改记录已经不完整）或者没有版本的时候返回整个菜单
+     * @param since 客户端当前的菜单版本号
+     * @return
+     */
+    @GetMapping("/changes")
+    @ApiOperation("获取菜单的增量修改")
+    public Result<MenuChangesVO> changes(@RequestParam(required = false) Long since) {
+        return Result.success(menuChangesBuilder.changesSince(since));
+    }
+
+}
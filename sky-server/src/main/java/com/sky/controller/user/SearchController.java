@@ -0,0 +1,69 @@
+package com.sky.controller.user;
+
+import com.sky.cache.MenuSnapshot;
+import com.sky.cache.MenuSnapshotHolder;
+import com.sky.entity.Setmeal;
+import com.sky.result.Result;
+import com.sky.service.MenuSearchService;
+import com.sky.vo.DishVO;
+import com.sky.vo.SearchVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("user/search")
+@Api(tags = "C端-搜索接口")
+@Slf4j
+@RequiredArgsConstructor
+public class SearchController {
+
+    // 每种最多返回的条数
+    private static final int LIMIT = 50;
+
+    private final MenuSearchService menuSearchService;
+
+    private final MenuSnapshotHolder menuSnapshotHolder;
+
+    /**
+     * 按名称和描述搜索起售中的菜品和套餐
+     * 起售状态和口味以菜单快照为准
+     * @param keyword
+     * @return
+     */
+    @GetMapping
+    @ApiOperation("搜索菜品和套餐")
+    public Result<SearchVO> search(String keyword) {
+        MenuSnapshot menu = menuSnapshotHolder.get();
+
+        List<DishVO> dishes = menuSearchService.searchDishes(keyword, false).stream()
+                .map(dish -> menu.getOnSaleDish(dish.getId()))
+                .filter(Objects::nonNull)
+                .limit(LIMIT)
+                .map(dish -> {
+                    DishVO dishVO = new DishVO();
+                    BeanUtils.copyProperties(dish, dishVO);
+                    dishVO.setFlavors(menu.getFlavors(dish.getId()));
+                    return dishVO;
+                })
+                .collect(Collectors.toList());
+
+        List<Setmeal> setmeals = menuSearchService.searchSetmeals(keyword, false).stream()
+                .map(setmeal -> menu.getOnSaleSetmeal(setmeal.getId()))
+                .filter(Objects::nonNull)
+                .limit(LIMIT)
+                .collect(Collectors.toList());
+
+        return Result.success(new SearchVO(dishes, setmeals));
+    }
+
+}
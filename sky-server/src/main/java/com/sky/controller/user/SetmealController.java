@@ -1,15 +1,14 @@
 package com.sky.controller.user;
 
-import com.sky.constant.StatusConstant;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuCacheWarmer;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
-import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,7 +23,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SetmealController {
 
-    private final SetmealService setmealService;
+    private final MenuCache menuCache;
+
+    private final MenuCacheWarmer menuCacheWarmer;
 
     /**
      * 根据分类id查询所有套餐
@@ -32,17 +33,11 @@ public class SetmealController {
      */
     @GetMapping("list")
     @ApiOperation("根据分类id查询所有套餐")
-    @Cacheable(cacheNames = "setmealCache", key = "#categoryId")
     public Result<List<Setmeal>> list(Long categoryId) {
         log.info("根据分类id查询所有套餐{}", categoryId);
 
-        // 这里把查询的条件保存到Setmeal这个对象中
-        Setmeal setmeal = Setmeal.builder()
-                .categoryId(categoryId)
-                .status(StatusConstant.ENABLE)
-                .build();
-
-        List<Setmeal> setmealList = setmealService.list(setmeal);
+        // 热点数据加上缓存（本地缓存 + redis）
+        List<Setmeal> setmealList = menuCache.get(MenuCache.setmealKey(categoryId), () -> menuCacheWarmer.loadSetmeals(categoryId));
         return Result.success(setmealList);
     }
 
@@ -53,8 +48,9 @@ public class SetmealController {
      */
     @GetMapping("/dish/{id}")
     @ApiOperation("根据套餐id查询包含的菜品列表")
-    public Result<List<DishItemVO>> dishList(@PathVariable Integer id) {
-        List<DishItemVO> dishItemVOList = setmealService.getDishItemById(id);
+    public Result<List<DishItemVO>> dishList(@PathVariable Long id) {
+        // 打开套餐详情的次数很多，和套餐列表一样放到缓存中
+        List<DishItemVO> dishItemVOList = menuCache.get(MenuCache.setmealDishKey(id), () -> menuCacheWarmer.loadSetmealDishes(id));
         return Result.success(dishItemVOList);
     }
 
@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.constant.MessageConstant;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.ShoppingCart;
 import com.sky.result.Result;
@@ -8,8 +9,10 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.constraints.Size;
 import java.util.List;
 
 @RestController
@@ -17,6 +20,7 @@ import java.util.List;
 @Slf4j
 @Api(tags = "C端-购物车模块")
 @RequiredArgsConstructor
+@Validated
 public class ShoppingCartController {
 
     private final ShoppingCartService shoppingCartService;
@@ -33,6 +37,19 @@ public class ShoppingCartController {
         return Result.success();
     }
 
+    /**
+     * 批量修改购物车，把每个商品的数量直接设置为目标数量（客户端合并多次点击之后一次同步）
+     * 一次最多100个商品
+     * @param shoppingCartDTOs
+     * @return 修改之后的购物车
+     */
+    @PostMapping("/batch")
+    @ApiOperation("批量修改购物车")
+    public Result<List<ShoppingCart>> batch(@RequestBody @Size(min = 1, max = 100, message = MessageConstant.BATCH_SIZE_INVALID) List<ShoppingCartDTO> shoppingCartDTOs) {
+        List<ShoppingCart> cartList = shoppingCartService.batch(shoppingCartDTOs);
+        return Result.success(cartList);
+    }
+
     /**
      * 查看购物车
      * @return
@@ -7,7 +7,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.stream.Collectors;
 
 /**
  * 全局异常处理器，处理项目中抛出的业务异常
@@ -27,6 +30,20 @@ public class GlobalExceptionHandler {
         return Result.error(ex.getMessage());
     }
 
+    /**
+     * 捕获参数校验异常（@Validated的controller中方法参数上的校验注解）
+     * @param ex
+     * @return
+     */
+    @ExceptionHandler
+    public Result exceptionHandler(ConstraintViolationException ex){
+        String message = ex.getConstraintViolations().stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("，"));
+        log.error("参数校验失败：{}", message);
+        return Result.error(message);
+    }
+
     // SQLIntegrityConstraintViolationException:
     // Duplicate entry 'lisi' for key 'employee.idx_username'
     public Result exceptionHandler(SQLIntegrityConstraintViolationException ex){
@@ -0,0 +1,174 @@
+package com.sky.interceptor;
+
+import com.alibaba.fastjson.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.properties.RateLimitProperties;
+import com.sky.result.Result;
+import com.sky.utils.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写接口的限流拦截器
+ * 每个接口按用户（未登录的按ip）一个令牌桶，另外整个接口还有一个全局的令牌桶
+ * 需要注册在jwt拦截器之后，这样才能从BaseContext中拿到用户id
+ */
+@Component
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        TOKEN_BUCKET_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/token_bucket.lua")));
+        TOKEN_BUCKET_SCRIPT.setResultType(Long.class);
+    }
+
+    private final RateLimitProperties rateLimitProperties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 用户级别的令牌桶 key: 接口路径 + 用户id/ip
+    // 限制数量并且一段时间不使用就删除，伪造大量ip的时候内存也不会一直增长
+    private final Cache<String, TokenBucket> userBuckets;
+
+    // 接口级别的令牌桶 key: 接口路径
+    private final Map<String, TokenBucket> globalBuckets = new ConcurrentHashMap<>();
+
+    public RateLimitInterceptor(RateLimitProperties rateLimitProperties, StringRedisTemplate stringRedisTemplate) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.userBuckets = Caffeine.newBuilder()
+                .maximumSize(rateLimitProperties.getMaxUserBuckets())
+                .expireAfterAccess(rateLimitProperties.getIdleSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!rateLimitProperties.isEnabled() || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+
+        // 拿到的是映射的路径模板（例如 /user/order/reminder/{id}），这样不同的路径参数共用一个桶
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        RateLimitProperties.Limit limit = pattern == null ? null : rateLimitProperties.getEndpoints().get(pattern);
+        if (limit == null) {
+            return true;
+        }
+
+        // 先检查单个用户的，避免一个用户把全局的令牌全部耗光
+        // 全局的令牌不够被拒绝的时候把用户的令牌退回去，这次请求没有处理不应该占用户的额度
+        String userKey = pattern + ":" + currentUser(request, pattern);
+        TokenBucket userBucket = userBuckets.get(userKey, k -> new TokenBucket(limit.getUserCapacity(), limit.getUserRefillPerSecond()));
+        long waitNanos = userBucket.tryAcquire();
+        if (waitNanos == 0) {
+            waitNanos = acquireGlobal(pattern, limit);
+            if (waitNanos == 0) {
+                return true;
+            }
+            userBucket.release();
+        }
+
+        log.warn("接口 {} 请求过于频繁 {}", pattern, userKey);
+        reject(response, waitNanos);
+        return false;
+    }
+
+    /**
+     * 获取接口级别的令牌，开启了分布式的话通过redis的lua脚本在所有节点之间共享一个桶
+     * redis出问题的时候退化为本地的令牌桶
+     * @return 0 表示获取成功，否则是还需要等待的纳秒数
+     */
+    private long acquireGlobal(String pattern, RateLimitProperties.Limit limit) {
+        if (rateLimitProperties.isDistributed()) {
+            try {
+                Long waitMillis = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                        Collections.singletonList(KEY_PREFIX + pattern),
+                        String.valueOf(limit.getGlobalCapacity()),
+                        String.valueOf(limit.getGlobalRefillPerSecond() / 1000),
+                        String.valueOf(System.currentTimeMillis()));
+                return waitMillis == null ? 0 : TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            } catch (Exception e) {
+                log.error("redis限流失败，使用本地限流 {}", e.getMessage());
+            }
+        }
+        return globalBuckets
+                .computeIfAbsent(pattern, k -> new TokenBucket(limit.getGlobalCapacity(), limit.getGlobalRefillPerSecond()))
+                .tryAcquire();
+    }
+
+    /**
+     * 已登录的用户用用户id，登录接口之类的没有用户id就使用ip
+     */
+    private String currentUser(HttpServletRequest request, String pattern) {
+        if (!"/user/user/login".equals(pattern)) {
+            Long userId = BaseContext.getCurrentId();
+            if (userId != null) {
+                return String.valueOf(userId);
+            }
+        }
+        return clientIp(request);
+    }
+
+    /**
+     * 客户端的ip
+     * X-Forwarded-For 可以被客户端伪造，只有请求直接来自可信的代理（nginx）的时候才使用
+     * 从右往左跳过可信的代理，第一个不可信的地址就是真实的客户端（再左边的都是客户端自己填的）
+     */
+    private String clientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        List<String> trustedProxies = rateLimitProperties.getTrustedProxies();
+        if (!trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor != null && !forwardedFor.isEmpty()) {
+            String[] ips = forwardedFor.split(",");
+            for (int i = ips.length - 1; i >= 0; i--) {
+                String ip = ips[i].trim();
+                if (!ip.isEmpty() && !trustedProxies.contains(ip)) {
+                    return ip;
+                }
+            }
+        }
+        String realIp = request.getHeader("X-Real-IP");
+        return realIp != null && !realIp.isEmpty() ? realIp.trim() : remoteAddr;
+    }
+
+    /**
+     * 响应429状态码，并且告诉客户端多久之后可以重试
+     */
+    private void reject(HttpServletResponse response, long waitNanos) throws Exception {
+        long retryAfter = Math.max(1, (long) Math.ceil(waitNanos / 1_000_000_000D));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSON.toJSONString(Result.error(MessageConstant.TOO_MANY_REQUESTS)));
+    }
+
+}
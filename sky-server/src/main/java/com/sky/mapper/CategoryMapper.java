@@ -45,6 +45,14 @@ public interface CategoryMapper {
     @AutoFill(value = OperationType.UPDATE)
     void update(Category category);
 
+    /**
+     * 批量修改分类的状态（一条update语句）
+     * @param category 只使用status和修改时间、修改人
+     * @param ids
+     */
+    @AutoFill(value = OperationType.UPDATE)
+    void updateStatusBatch(Category category, List<Long> ids);
+
     /**
      * 根据类型查询分类(注意只有启用的才能查到)
      * @param type
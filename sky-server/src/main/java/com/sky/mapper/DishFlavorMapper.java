@@ -26,4 +26,18 @@ public interface DishFlavorMapper {
 
     @Select("select * from sky_take_out.dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> selectByDisId(Long dishId);
+
+    /**
+     * 批量查询多个菜品的口味
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> selectByDishIds(List<Long> dishIds);
+
+    /**
+     * 查询所有的口味
+     * @return
+     */
+    @Select("select * from sky_take_out.dish_flavor")
+    List<DishFlavor> list();
 }
@@ -34,9 +34,10 @@ public interface DishMapper {
     /**
      * 菜品分页展示
      * @param dishPageQueryDTO
+     * @param ids 按名称搜索的时候是搜索索引查出来的菜品id，不为null的时候代替 name like
      * @return
      */
-    Page<DishVO> page(DishPageQueryDTO dishPageQueryDTO);
+    Page<DishVO> page(DishPageQueryDTO dishPageQueryDTO, List<Long> ids);
 
     /**
      * 根据id查询相应的菜品
@@ -59,6 +60,36 @@ public interface DishMapper {
      */
     void deleteBatch(List<Long> ids);
 
+    /**
+     * 查询这些菜品所在的分类
+     * @param ids
+     * @return
+     */
+    List<Long> selectCategoryIdsByIds(List<Long> ids);
+
+    /**
+     * 根据id批量查询菜品
+     * @param ids
+     * @return
+     */
+    List<Dish> selectByIds(List<Long> ids);
+
+    /**
+     * 统计这些菜品中是某个状态的数量
+     * @param ids
+     * @param status
+     * @return
+     */
+    int countByIdsAndStatus(List<Long> ids, Integer status);
+
+    /**
+     * 统计这些套餐中包含的某个状态的菜品数量
+     * @param setmealIds
+     * @param status
+     * @return
+     */
+    int countBySetmealIdsAndStatus(List<Long> setmealIds, Integer status);
+
     /**
      * 修改dish表的信息 (修改都是动态修改就行)
      * @param dish
@@ -66,6 +97,14 @@ public interface DishMapper {
     @AutoFill(OperationType.UPDATE)
     void update(Dish dish);
 
+    /**
+     * 批量修改菜品的状态（一条update语句）
+     * @param dish 只使用status和修改时间、修改人
+     * @param ids
+     */
+    @AutoFill(OperationType.UPDATE)
+    void updateStatusBatch(Dish dish, List<Long> ids);
+
     /**
      * 根据分类id查询对应的菜品
      * @param paramters
@@ -22,4 +22,12 @@ public interface OrderDetailMapper {
      */
     @Select("select * from sky_take_out.order_detail where order_id = #{orderId}")
     List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 把用户购物车中的商品直接复制为订单明细（一条sql完成，不用在Java中转一遍）
+     * @param orderId
+     * @param userId
+     * @return 插入的订单明细数量
+     */
+    Integer insertFromShoppingCart(Long orderId, Long userId);
 }
@@ -17,6 +17,13 @@ public interface SetmealDishMapper {
      */
     List<Long> getSetmealDishIdsByDishId(List<Long> ids);
 
+    /**
+     * 统计这些菜品被套餐关联的数量
+     * @param dishIds
+     * @return
+     */
+    int countByDishIds(List<Long> dishIds);
+
     /**
      * 批量增加套餐与菜品的的对应关系
      * @param setmealDishes
@@ -45,5 +52,5 @@ public interface SetmealDishMapper {
      * @param setmealId
      * @return
      */
-    List<DishItemVO> getDishItemById(Integer setmealId);
+    List<DishItemVO> getDishItemById(Long setmealId);
 }
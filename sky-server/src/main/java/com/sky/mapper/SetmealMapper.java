@@ -26,15 +26,51 @@ public interface SetmealMapper {
     @AutoFill(OperationType.INSERT)
     void insert(Setmeal setmeal);
 
-    Page<SetmealVO> pageQuery(SetmealPageQueryDTO setmealPageQueryDTO);
+    /**
+     * 分页查询套餐
+     * @param setmealPageQueryDTO
+     * @param ids 按名称搜索的时候是搜索索引查出来的套餐id，不为null的时候代替 name like
+     * @return
+     */
+    Page<SetmealVO> pageQuery(SetmealPageQueryDTO setmealPageQueryDTO, List<Long> ids);
 
     @Select("select * from sky_take_out.setmeal where id = #{id}")
     Setmeal getById(Long id);
 
     void deleteBatch(List<Long> ids);
 
+    /**
+     * 查询这些套餐所在的分类
+     * @param ids
+     * @return
+     */
+    List<Long> selectCategoryIdsByIds(List<Long> ids);
+
+    /**
+     * 根据id批量查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> selectByIds(List<Long> ids);
+
+    /**
+     * 统计这些套餐中是某个状态的数量
+     * @param ids
+     * @param status
+     * @return
+     */
+    int countByIdsAndStatus(List<Long> ids, Integer status);
+
     void update(Setmeal setmeal);
 
+    /**
+     * 批量修改套餐的状态（一条update语句）
+     * @param setmeal 只使用status和修改时间、修改人
+     * @param ids
+     */
+    @AutoFill(OperationType.UPDATE)
+    void updateStatusBatch(Setmeal setmeal, List<Long> ids);
+
     /**
      * 动态条件查询套餐
      * @param setmeal
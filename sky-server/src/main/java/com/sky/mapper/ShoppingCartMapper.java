@@ -1,11 +1,14 @@
 package com.sky.mapper;
 
+import com.sky.dto.ShoppingCartSummaryDTO;
 import com.sky.entity.ShoppingCart;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -22,7 +25,7 @@ public interface ShoppingCartMapper {
      * 动态的修改购物车的相关物品的状态
      * @param shoppingCart
      */
-    @Update("update sky_take_out.shopping_cart set number = #{number} where id = #{id}")
+    @Update("update sky_take_out.shopping_cart set number = #{number}, update_time = now() where id = #{id}")
     void updateNumberById(ShoppingCart shoppingCart);
 
     /**
@@ -49,8 +52,96 @@ public interface ShoppingCartMapper {
     void deleteById(Long id);
 
     /**
-     * 批量插入购物车对象
+     * 批量插入购物车对象（已经在购物车中的商品数量累加）
      * @param shoppingCarts
      */
     void insertBatch(List<ShoppingCart> shoppingCarts);
+
+    /**
+     * 汇总并锁住用户的购物车（需要在事务中调用，下单期间购物车不能被修改）
+     * 合计金额、总件数、菜品摘要一条sql算出来，购物车为空的时候合计金额是null
+     * @param userId
+     * @return
+     */
+    ShoppingCartSummaryDTO summaryByUserIdForUpdate(Long userId);
+
+    /**
+     * 添加商品进购物车：不存在就插入，存在就数量加一（一条sql完成，不会因为并发插入重复的数据）
+     * @param shoppingCart
+     * @return
+     */
+    Integer upsertIncrement(ShoppingCart shoppingCart);
+
+    /**
+     * 数量大于1的时候数量减一
+     * @param shoppingCart userId dishId setmealId dishFlavor
+     * @return 修改的行数，0表示商品不存在或者只剩一份了
+     */
+    Integer decrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 商品只剩一份的时候从购物车中删除
+     * @param shoppingCart userId dishId setmealId dishFlavor
+     */
+    void deleteIfLast(ShoppingCart shoppingCart);
+
+    /**
+     * 批量设置商品的数量：不存在就插入，存在就把数量改为目标数量
+     * @param shoppingCarts
+     */
+    void upsertBatch(List<ShoppingCart> shoppingCarts);
+
+    /**
+     * 批量删除用户购物车中的商品
+     * @param userId
+     * @param shoppingCarts dishId setmealId dishFlavor
+     */
+    void deleteItems(Long userId, List<ShoppingCart> shoppingCarts);
+
+    /**
+     * 按user_id的顺序查找最后一次修改购物车早于指定时间的用户
+     * @param afterUserId 从这个用户id之后开始查找
+     * @param time
+     * @param limit
+     * @return
+     */
+    List<Long> listExpiredUserIds(Long afterUserId, LocalDateTime time, Integer limit);
+
+    /**
+     * 删除这些用户最后修改时间早于指定时间的购物车数据（清理期间用户又修改过的不会被删除）
+     * @param userIds
+     * @param time
+     * @return 删除的行数
+     */
+    Integer deleteExpired(List<Long> userIds, LocalDateTime time);
+
+    /**
+     * 指定时间之后加入购物车的行数（只扫描create_time索引的一个范围，不扫描整张表）
+     * @param time
+     * @return
+     */
+    @Select("select count(*) from sky_take_out.shopping_cart where create_time >= #{time}")
+    Long countSince(LocalDateTime time);
+
+    /**
+     * 指定时间之后加购过的用户数
+     * @param time
+     * @return
+     */
+    @Select("select count(distinct user_id) from sky_take_out.shopping_cart where create_time >= #{time}")
+    Long countUsersSince(LocalDateTime time);
+
+    /**
+     * 购物车表的估计行数（InnoDB统计信息中的值，不扫描表）
+     * @return
+     */
+    @Select("select table_rows from information_schema.TABLES where table_schema = 'sky_take_out' and table_name = 'shopping_cart'")
+    Long estimateRows();
+
+    /**
+     * 修改购物车中商品的价格
+     * @param shoppingCart
+     */
+    @Update("update sky_take_out.shopping_cart set amount = #{amount} where id = #{id}")
+    void updateAmountById(ShoppingCart shoppingCart);
 }
@@ -41,6 +41,13 @@ public interface CategoryService {
      */
     void startOrStop(Integer status, Long id);
 
+    /**
+     * 批量启用、禁用分类
+     * @param status
+     * @param ids
+     */
+    void startOrStopBatch(Integer status, List<Long> ids);
+
     /**
      * 根据类型查询分类
      * @param type
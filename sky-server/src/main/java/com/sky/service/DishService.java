@@ -50,6 +50,27 @@ public interface DishService {
      */
     void startOrStop(Integer status, Long id);
 
+    /**
+     * 批量启用和禁用
+     * @param status
+     * @param ids
+     */
+    void startOrStopBatch(Integer status, List<Long> ids);
+
+    /**
+     * 查询这些菜品所在的分类（修改之前调用，用于删除对应分类的缓存）
+     * @param ids
+     * @return
+     */
+    List<Long> listCategoryIds(List<Long> ids);
+
+    /**
+     * 查询包含这些菜品的套餐（修改之后调用，用于刷新套餐中菜品列表的缓存）
+     * @param ids
+     * @return
+     */
+    List<Long> listSetmealIds(List<Long> ids);
+
     /**
      * 根据分类id查询菜品集合
      * 好像只要是查询出来的都要按照时间排序一下，那么都是要写xml文件的
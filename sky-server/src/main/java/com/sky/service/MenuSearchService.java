@@ -0,0 +1,39 @@
+package com.sky.service;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MenuSearchService {
+
+    /**
+     * 搜索菜品（包括停售的）
+     * @param keyword
+     * @param nameOnly true只搜索名称，false名称和描述都搜索
+     * @return 名称匹配的排在前面
+     */
+    List<Dish> searchDishes(String keyword, boolean nameOnly);
+
+    /**
+     * 搜索套餐（包括停售的）
+     * @param keyword
+     * @param nameOnly true只搜索名称，false名称和描述都搜索
+     * @return 名称匹配的排在前面
+     */
+    List<Setmeal> searchSetmeals(String keyword, boolean nameOnly);
+
+    /**
+     * 重新加载这些菜品（新增、修改、删除之后调用）
+     * @param ids
+     */
+    void refreshDishes(Collection<Long> ids);
+
+    /**
+     * 重新加载这些套餐（新增、修改、删除之后调用）
+     * @param ids
+     */
+    void refreshSetmeals(Collection<Long> ids);
+
+}
@@ -48,6 +48,20 @@ public interface SetmealService {
      */
     void startOrstop(Integer status, Long id);
 
+    /**
+     * 套餐批量启用或是禁用
+     * @param status
+     * @param ids
+     */
+    void startOrStopBatch(Integer status, List<Long> ids);
+
+    /**
+     * 查询这些套餐所在的分类（修改之前调用，用于删除对应分类的缓存）
+     * @param ids
+     * @return
+     */
+    List<Long> listCategoryIds(List<Long> ids);
+
     /**
      * 条件查询
      * @param setmeal
@@ -60,5 +74,5 @@ public interface SetmealService {
      * @param id
      * @return
      */
-    List<DishItemVO> getDishItemById(Integer id);
+    List<DishItemVO> getDishItemById(Long id);
 }
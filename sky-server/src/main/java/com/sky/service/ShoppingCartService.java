@@ -13,6 +13,13 @@ public interface ShoppingCartService {
      */
     void addShoppingCart(ShoppingCartDTO shoppingCartDTO);
 
+    /**
+     * 批量修改购物车中商品的数量
+     * @param shoppingCartDTOs 每个商品的目标数量，0表示删除（1到100个商品）
+     * @return 修改之后的购物车
+     */
+    List<ShoppingCart> batch(List<ShoppingCartDTO> shoppingCartDTOs);
+
     /**
      * 查看购物车
      * @return
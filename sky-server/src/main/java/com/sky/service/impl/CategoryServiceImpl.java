@@ -3,6 +3,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.CategoryDTO;
@@ -32,6 +33,9 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final SetmealMapper setmealMapper;
 
+    // 分类很少修改，列表放到菜单缓存中，修改之后删除
+    private final MenuCache menuCache;
+
     /**
      * 新增分类
      * @param categoryDTO
@@ -53,6 +57,7 @@ public class CategoryServiceImpl implements CategoryService {
 //        category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.insert(category);
+        menuCache.evict(MenuCache.categoryKeys());
     }
 
     /**
@@ -85,6 +90,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
         int i = 1 / 0;
         categoryMapper.deleteById(id);
+        menuCache.evict(MenuCache.categoryKeys());
     }
 
     /**
@@ -104,6 +110,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         // update都是可以动态的sql语句那么就可实现一个方法概括所有的修改
         categoryMapper.update(category);
+        menuCache.evict(MenuCache.categoryKeys());
     }
 
     /**
@@ -121,15 +128,33 @@ public class CategoryServiceImpl implements CategoryService {
 //                .updateUser(BaseContext.getCurrentId())
                 .build();
         categoryMapper.update(category);
+        menuCache.evict(MenuCache.categoryKeys());
+    }
+
+    /**
+     * 批量启用、禁用分类（一条update语句）
+     * @param status
+     * @param ids
+     */
+    @Override
+    public void startOrStopBatch(Integer status, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Category category = Category.builder()
+                .status(status)
+                .build();
+        categoryMapper.updateStatusBatch(category, ids);
+        menuCache.evict(MenuCache.categoryKeys());
     }
 
     /**
-     * 根据类型查询分类
+     * 根据类型查询分类（只有启用的，走菜单缓存）
      * @param type
      * @return
      */
     @Override
     public List<Category> list(Integer type) {
-        return categoryMapper.list(type);
+        return menuCache.get(MenuCache.categoryKey(type), () -> categoryMapper.list(type));
     }
 }
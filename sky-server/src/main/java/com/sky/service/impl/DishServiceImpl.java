@@ -14,6 +14,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
+import com.sky.service.MenuSearchService;
 import com.sky.vo.DishVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -37,6 +39,8 @@ public class DishServiceImpl implements DishService {
 
     private final SetmealDishMapper setmealDishMapper;
 
+    private final MenuSearchService menuSearchService;
+
     /**
      * 新增菜品和对应的口味
      * @param dishDTO
@@ -52,6 +56,7 @@ public class DishServiceImpl implements DishService {
         // 向菜品表插入一条数据(主键回显)
         dishMapper.insert(dish);
         Long dishId = dish.getId();
+        dishDTO.setId(dishId);
         // 向口味表插入多条数据
         List<DishFlavor> flavors = dishDTO.getFlavors();
         if (flavors != null && flavors.size() > 0) {
@@ -67,8 +72,18 @@ public class DishServiceImpl implements DishService {
      */
     @Override
     public PageResult page(DishPageQueryDTO dishPageQueryDTO) {
+        // 按名称搜索的时候先用搜索索引查出菜品id，不用 like '%xx%' 扫描整张表
+        List<Long> ids = null;
+        String name = dishPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            ids = menuSearchService.searchDishes(name, true).stream().map(Dish::getId).collect(Collectors.toList());
+            if (ids.isEmpty()) {
+                return new PageResult(0, new ArrayList<>());
+            }
+        }
+
         PageHelper.startPage(dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
-        Page<DishVO> page = dishMapper.page(dishPageQueryDTO);
+        Page<DishVO> page = dishMapper.page(dishPageQueryDTO, ids);
         return new PageResult(page.getTotal(), page.getResult());
     }
 
@@ -79,17 +94,13 @@ public class DishServiceImpl implements DishService {
     @Override
     @Transactional
     public void deleteBatch(List<Long> ids) {
-        // 首先判断这些菜品是否存在起售中的菜品
-        for (Long id : ids) {
-            Dish dish = dishMapper.selectById(id);
-            if (dish.getStatus() == StatusConstant.ENABLE) {
-                throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
-            }
+        // 首先判断这些菜品是否存在起售中的菜品（一条count语句，不用每个菜品查询一次）
+        if (dishMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE) > 0) {
+            throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
         }
 
         // 其次不能和套餐表有相连的关系
-        List<Long> setmealIds = setmealDishMapper.getSetmealDishIdsByDishId(ids);
-        if (setmealIds != null && setmealIds.size() > 0) {
+        if (setmealDishMapper.countByDishIds(ids) > 0) {
             throw new DeletionNotAllowedException(MessageConstant.DISH_BE_RELATED_BY_SETMEAL);
         }
 
@@ -161,6 +172,48 @@ public class DishServiceImpl implements DishService {
         dishMapper.update(dish);
     }
 
+    /**
+     * 批量启用和禁用（一条update语句）
+     * @param status
+     * @param ids
+     */
+    @Override
+    public void startOrStopBatch(Integer status, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Dish dish = Dish.builder()
+                .status(status)
+                .build();
+        dishMapper.updateStatusBatch(dish, ids);
+    }
+
+    /**
+     * 查询这些菜品所在的分类
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<Long> listCategoryIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return dishMapper.selectCategoryIdsByIds(ids);
+    }
+
+    /**
+     * 查询包含这些菜品的套餐
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<Long> listSetmealIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return setmealDishMapper.getSetmealDishIdsByDishId(ids);
+    }
+
     /**
      * 根据分类id查询菜品集合
      * 好像只要是查询出来的都要按照时间排序一下，那么都是要写xml文件的
@@ -187,15 +240,19 @@ public class DishServiceImpl implements DishService {
     public List<DishVO> listWithFlavor(Map<String, Object> params) {
         List<Dish> dishList = dishMapper.list(params);
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        // 一次查询出这些菜品的全部口味，再按菜品id分组（不用每个菜品查询一次）
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.selectByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish dish : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(dish, dishVO);
-
-            // 根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.selectByDisId(dish.getId());
-            dishVO.setFlavors(flavors);
-
+            dishVO.setFlavors(flavorMap.getOrDefault(dish.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
         return dishVOList;
@@ -5,6 +5,10 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky.cache.MenuSnapshot;
+import com.sky.cache.MenuSnapshotHolder;
+import com.sky.cache.OrderNumberCache;
+import com.sky.cache.ShoppingCartCache;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.sky.constant.MessageConstant;
@@ -23,14 +27,16 @@ import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import com.sky.websocket.OrderReminderBuffer;
 import com.sky.websocket.WebSocketServer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -59,12 +65,24 @@ public class OrderServiceImpl implements OrderService {
 
     private final ObjectMapper objectMapper;
 
+    private final OrderNumberCache orderNumberCache;
+
+    private final OrderReminderBuffer orderReminderBuffer;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ShoppingCartCache shoppingCartCache;
+
+    private final MenuSnapshotHolder menuSnapshotHolder;
+
     /**
      * 用户下单
+     * 分成两个阶段：校验阶段（地址、配送距离、购物车、订单数据的准备）不开启事务，
+     * 其中配送距离要调用百度地图的接口，如果放在事务里面，数据库连接会一直被占用到接口返回；
+     * 写入阶段只包含订单和订单明细的插入，放在一个很短的事务里面
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     @Override
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         // 第一步检查是否确定了默认的配送地址，还要检查购物车中是否还有物品（为了代码的健壮性）
@@ -80,17 +98,15 @@ public class OrderServiceImpl implements OrderService {
         checkOutOfRange(address);
 
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCartFilter = ShoppingCart.builder()
-                .userId(userId)
-                .build();
-        List<ShoppingCart> shoppingCarts = shoppingCartMapper.list(shoppingCartFilter);
-        if (shoppingCarts == null || shoppingCarts.isEmpty()) {
-            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
+        checkShoppingCart(userId);
+        if (shoppingCartCache.isEnabled()) {
+            // 购物车保存在redis中，下单之前先同步到数据库
+            shoppingCartCache.flush(userId);
         }
 
-        // 第二步 一个订单插入数据库 多个订单项插入数据库（涉及多个表操作，要用事务, 还要主键回显下面会用到）
+        // 第二步 在事务外面把订单准备好（金额、打包费都由服务端计算，不使用前端传过来的）
         Orders orders = new Orders();
-        BeanUtils.copyProperties(ordersSubmitDTO, orders); // 地址id 付款方式 总金额
+        BeanUtils.copyProperties(ordersSubmitDTO, orders, "amount", "packAmount"); // 地址id 付款方式
         orders.setNumber(String.valueOf(System.currentTimeMillis())); // 订单号
         orders.setStatus(Orders.PENDING_PAYMENT); // 订单的状态
         orders.setUserId(userId); // 用户id
@@ -99,20 +115,33 @@ public class OrderServiceImpl implements OrderService {
         orders.setPhone(addressBook.getPhone()); // 手机号
         orders.setConsignee(addressBook.getConsignee()); // 收货人
 
-        orderMapper.insert(orders);
-
-        // 最好是批量插入，这要的话，sql语句只用发送一条，服务器压力会小很多
-        List<OrderDetail> orderDetails = new ArrayList<>();
-        for (ShoppingCart shoppingCart : shoppingCarts) {
-            OrderDetail orderDetail = new OrderDetail();
-            BeanUtils.copyProperties(shoppingCart, orderDetail);
-            orderDetail.setOrderId(orders.getId());
-            orderDetails.add(orderDetail);
-        }
-
-        orderDetailMapper.insertBatch(orderDetails);
+        // 第三步 一个订单插入数据库 多个订单项插入数据库（涉及多个表操作，要用事务, 还要主键回显）
+        // 订单项直接在数据库里面从购物车复制（insert ... select），不用把购物车读到Java中再发回去
+        transactionTemplate.executeWithoutResult(status -> {
+            // 汇总的同时锁住购物车，汇总金额和复制订单明细使用的是同一份购物车，中间被修改的话订单金额和明细会对不上
+            // 订单金额由服务端根据购物车计算（菜品金额 + 打包费 + 配送费）
+            // 顺便把菜品摘要和总件数也汇总出来保存到订单中，订单列表展示的时候就不用再查询订单明细了
+            ShoppingCartSummaryDTO cartSummary = shoppingCartMapper.summaryByUserIdForUpdate(userId);
+            if (cartSummary == null || cartSummary.getAmount() == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
+            }
+            // 打包费按件数计算
+            int packAmount = cartSummary.getDishCount() * packFee;
+            orders.setPackAmount(packAmount); // 打包费
+            orders.setAmount(cartSummary.getAmount().add(BigDecimal.valueOf(packAmount)).add(deliveryFee)); // 总金额
+            orders.setDishSummary(cartSummary.getDishSummary()); // 菜品摘要
+            orders.setDishCount(cartSummary.getDishCount()); // 总件数
+
+            orderMapper.insert(orders);
+            Integer count = orderDetailMapper.insertFromShoppingCart(orders.getId(), userId);
+            if (count == null || count == 0) {
+                // 校验之后购物车被清空了
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
+            }
+        });
+        orderNumberCache.put(orders.getId(), orders.getNumber());
 
-        // 第三步清理购物车（但是如果支付失败的话，那就没了，还有待商榷， 也有办法返回就是从订单项中在获取商品信息插入回去）
+        // 清理购物车（但是如果支付失败的话，那就没了，还有待商榷， 也有办法返回就是从订单项中在获取商品信息插入回去）
         // shoppingCartMapper.deleteByUserId(userId);
 
         // 最后 设置返回的数据格式
@@ -126,14 +155,80 @@ public class OrderServiceImpl implements OrderService {
         return orderSubmitVO;
     }
 
+    /**
+     * 下单之前用菜单快照校验购物车中商品的状态和价格
+     * 有变化的商品在购物车中修正（停售的删除，价格变化的改为现价），然后提示用户重新确认
+     * @param userId
+     */
+    private void checkShoppingCart(Long userId) {
+        MenuSnapshot menu = menuSnapshotHolder.get();
+        List<ShoppingCart> shoppingCarts;
+        if (shoppingCartCache.isEnabled()) {
+            shoppingCarts = shoppingCartCache.list(userId);
+        } else {
+            ShoppingCart shoppingCartFilter = ShoppingCart.builder()
+                    .userId(userId)
+                    .build();
+            shoppingCarts = shoppingCartMapper.list(shoppingCartFilter);
+        }
+
+        boolean changed = false;
+        for (ShoppingCart shoppingCart : shoppingCarts) {
+            BigDecimal price = null;
+            if (shoppingCart.getDishId() != null) {
+                Dish dish = menu.getOnSaleDish(shoppingCart.getDishId());
+                price = dish == null ? null : dish.getPrice();
+            } else if (shoppingCart.getSetmealId() != null) {
+                Setmeal setmeal = menu.getOnSaleSetmeal(shoppingCart.getSetmealId());
+                price = setmeal == null ? null : setmeal.getPrice();
+            }
+            if (price != null && shoppingCart.getAmount() != null && price.compareTo(shoppingCart.getAmount()) == 0) {
+                continue;
+            }
+
+            changed = true;
+            if (shoppingCartCache.isEnabled()) {
+                String itemKey = ShoppingCartCache.itemKey(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor());
+                if (price == null) {
+                    shoppingCartCache.remove(userId, itemKey);
+                } else {
+                    shoppingCart.setAmount(price);
+                    shoppingCartCache.updateItem(userId, itemKey, shoppingCart);
+                }
+            } else {
+                if (price == null) {
+                    shoppingCartMapper.deleteById(shoppingCart.getId());
+                } else {
+                    shoppingCart.setAmount(price);
+                    shoppingCartMapper.updateAmountById(shoppingCart);
+                }
+            }
+        }
+
+        if (changed) {
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_CHANGED);
+        }
+    }
+
     // 商家的具体位置文本形式
     @Value("${sky.shop.address}")
     private String shopAddress;
 
+    // 配送费
+    @Value("${sky.shop.delivery-fee:6}")
+    private BigDecimal deliveryFee;
+
+    // 每件商品的打包费
+    @Value("${sky.shop.pack-fee:1}")
+    private int packFee;
+
     // 百度地图平台的接口验证
     @Value("${sky.baidu.ak}")
     private String ak;
 
+    // 商家的经纬度坐标（第一次下单的时候解析）
+    private volatile String shopLngLat;
+
     /**
      * 用于验证两者的距离是否相差5000米以内
      * @param address 顾客的具体地址的文本形式
@@ -147,19 +242,24 @@ public class OrderServiceImpl implements OrderService {
         map.put("ak", ak);
         map.put("output", "json");
 
-        // 获取商店的经纬度坐标（返回的是json转换为了字符串）
-        String shopCoordinate = HttpClientUtil.doGet(baiduGeocodingUrl, map);
+        // 商店的地址是固定的，经纬度坐标只用解析一次
+        String shopLngLat = this.shopLngLat;
+        if (shopLngLat == null) {
+            // 获取商店的经纬度坐标（返回的是json转换为了字符串）
+            String shopCoordinate = HttpClientUtil.doGet(baiduGeocodingUrl, map);
 
-        JSONObject jsonObject = JSON.parseObject(shopCoordinate);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("商店地址解析错误");
-        }
+            JSONObject shopJsonObject = JSON.parseObject(shopCoordinate);
+            if (!shopJsonObject.getString("status").equals("0")) {
+                throw new OrderBusinessException("商店地址解析错误");
+            }
 
-        // 数据解析 获取到具体的经纬度坐标
-        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
-        String lat = location.getString("lat");
-        String lng = location.getString("lng");
-        String shopLngLat = lat + "," + lng;
+            // 数据解析 获取到具体的经纬度坐标
+            JSONObject location = shopJsonObject.getJSONObject("result").getJSONObject("location");
+            String lat = location.getString("lat");
+            String lng = location.getString("lng");
+            shopLngLat = lat + "," + lng;
+            this.shopLngLat = shopLngLat;
+        }
 
         map.put("address", address);
 
@@ -184,7 +284,7 @@ public class OrderServiceImpl implements OrderService {
         map.put("steps_info","0");
 
         String jsonString = HttpClientUtil.doGet(baiduDirectionLite, map);
-        jsonObject = JSON.parseObject(jsonString);
+        JSONObject jsonObject = JSON.parseObject(jsonString);
         if (!jsonObject.getString("status").equals("0")) {
             throw new OrderBusinessException("配送路线规划失败");
         }
@@ -255,9 +355,13 @@ public class OrderServiceImpl implements OrderService {
 
         orderMapper.update(orders);
 
-        // 在清空购物车
-        Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        // 在清空购物车（支付回调中是没有登录用户的，所以用订单中的用户id）
+        Long userId = ordersDB.getUserId();
+        if (shoppingCartCache.isEnabled()) {
+            shoppingCartCache.clean(userId);
+        } else {
+            shoppingCartMapper.deleteByUserId(userId);
+        }
 
         // 通过websocket向服务器发送消息通知（来单提醒）
         Map map = new HashMap();
@@ -388,6 +492,12 @@ public class OrderServiceImpl implements OrderService {
             }
         ).collect(Collectors.toList());
 
+        if (shoppingCartCache.isEnabled()) {
+            // 购物车保存在redis中，直接加到redis的购物车里面（一次pipeline）
+            shoppingCartCache.incrementAll(userId, shoppingCarts);
+            return;
+        }
+
         // 批量插入
         shoppingCartMapper.insertBatch(shoppingCarts);
     }
@@ -407,7 +517,9 @@ public class OrderServiceImpl implements OrderService {
             list = page.stream().map(order -> {
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(order, orderVO);
-                orderVO.setOrderDishes(getOrderDishStr(order));
+                // 下单时已经保存了菜品摘要，老订单没有的话再查询订单明细拼接
+                String orderDishes = order.getDishSummary();
+                orderVO.setOrderDishes(orderDishes != null ? orderDishes : getOrderDishStr(order));
                 return orderVO;
             }).collect(Collectors.toList());
         }
@@ -579,24 +691,20 @@ public class OrderServiceImpl implements OrderService {
 
     /**
      * 催单
+     * 同一个订单在窗口期内只提醒一次，由定时任务合并推送，订单号从本地缓存中获取
      * @param id
      */
     @Override
     public void reminder(Long id) throws JsonProcessingException {
-        Orders order = orderMapper.getById(id);
+        String orderNumber = orderNumberCache.get(id);
 
-        if (order == null) {
+        if (orderNumber == null) {
             throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
-        // 封装消息
-        Map map = new HashMap();
-        map.put("type", 2);
-        map.put("orderId", id);
-        map.put("content", "订单号 : " + order.getNumber());
-
-        String json = objectMapper.writeValueAsString(map);
-        webSocketServer.sendToAllClient(json);
+        if (!orderReminderBuffer.offer(id, orderNumber)) {
+            log.info("订单 {} 已经催过单了", id);
+        }
     }
 
 }
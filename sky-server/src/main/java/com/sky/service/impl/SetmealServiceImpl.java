@@ -6,7 +6,6 @@ import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
-import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
 import com.sky.exception.DeletionNotAllowedException;
@@ -14,6 +13,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.service.MenuSearchService;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
@@ -23,7 +23,10 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -35,6 +38,8 @@ public class SetmealServiceImpl implements SetmealService {
     private final SetmealDishMapper setmealDishMapper;
     private final DishMapper dishMapper;
 
+    private final MenuSearchService menuSearchService;
+
     /**
      * 保存套餐并且与之对应的菜品
      * @param setmealDTO
@@ -49,6 +54,7 @@ public class SetmealServiceImpl implements SetmealService {
         setmealMapper.insert(setmeal);
         // 还要保存对应的菜品关系(主键回显)
         Long id = setmeal.getId();
+        setmealDTO.setId(id);
         List<SetmealDish> setmealDishes = setmealDTO.getSetmealDishes();
         setmealDishes.forEach(setmealDish -> {setmealDish.setSetmealId(id);});
 
@@ -63,9 +69,19 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Override
     public PageResult pageQuery(SetmealPageQueryDTO setmealPageQueryDTO) {
+        // 按名称搜索的时候先用搜索索引查出套餐id，不用 like '%xx%' 扫描整张表
+        List<Long> ids = null;
+        String name = setmealPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            ids = menuSearchService.searchSetmeals(name, true).stream().map(Setmeal::getId).collect(Collectors.toList());
+            if (ids.isEmpty()) {
+                return new PageResult(0, new ArrayList<>());
+            }
+        }
+
         // 一个线程保存了这两个变量，之后拼接
         PageHelper.startPage(setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize());
-        Page<SetmealVO> page = setmealMapper.pageQuery(setmealPageQueryDTO);
+        Page<SetmealVO> page = setmealMapper.pageQuery(setmealPageQueryDTO, ids);
         PageResult pageResult = new PageResult();
         pageResult.setTotal(page.getTotal());
         pageResult.setRecords(page.getResult());
@@ -77,14 +93,12 @@ public class SetmealServiceImpl implements SetmealService {
      * @param ids
      */
     @Override
+    @Transactional
     public void deleteBatch(List<Long> ids) {
-        // 起售中的套餐不能删除
-        ids.forEach(id -> {
-            Setmeal setmeal = setmealMapper.getById(id);
-            if (StatusConstant.ENABLE == setmeal.getStatus()) {
-                throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
-            }
-        });
+        // 起售中的套餐不能删除（一条count语句，不用每个套餐查询一次）
+        if (setmealMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE) > 0) {
+            throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
+        }
 
         // 删除套餐和对应的套餐-菜品表(批量删除，sql语句只用发送一条，服务器压力会小很多)
         setmealMapper.deleteBatch(ids);
@@ -135,17 +149,12 @@ public class SetmealServiceImpl implements SetmealService {
      * @param id
      */
     @Override
+    @Transactional
     public void startOrstop(Integer status, Long id) {
-        // 首先检查套餐中是否含有停用的菜品，如果有的话那么这个套餐是不能启用的
-        if (StatusConstant.ENABLE == status) {
-            List<Dish> dishList = dishMapper.getBySetmealId(id);
-            if (dishList != null && dishList.size() > 0) {
-                dishList.forEach(dish -> {
-                    if (StatusConstant.DISABLE == dish.getStatus()) {
-                        throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ENABLE_FAILED);
-                    }
-                });
-            }
+        // 首先检查套餐中是否含有停用的菜品，如果有的话那么这个套餐是不能启用的（直接在数据库中统计停售的菜品数量）
+        if (StatusConstant.ENABLE.equals(status)
+                && dishMapper.countBySetmealIdsAndStatus(Collections.singletonList(id), StatusConstant.DISABLE) > 0) {
+            throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ENABLE_FAILED);
         }
 
         // 这种build构造的话，不需要那么多的构造方法就可以任意的构造
@@ -156,6 +165,42 @@ public class SetmealServiceImpl implements SetmealService {
         setmealMapper.update(setmeal);
     }
 
+    /**
+     * 套餐批量启用或是禁用
+     * 启用的时候用一条count语句检查这些套餐中是否包含停售的菜品，然后一条update语句修改状态
+     * @param status
+     * @param ids
+     */
+    @Override
+    @Transactional
+    public void startOrStopBatch(Integer status, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (StatusConstant.ENABLE.equals(status)
+                && dishMapper.countBySetmealIdsAndStatus(ids, StatusConstant.DISABLE) > 0) {
+            throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ENABLE_FAILED);
+        }
+
+        Setmeal setmeal = Setmeal.builder()
+                .status(status)
+                .build();
+        setmealMapper.updateStatusBatch(setmeal, ids);
+    }
+
+    /**
+     * 查询这些套餐所在的分类
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<Long> listCategoryIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return setmealMapper.selectCategoryIdsByIds(ids);
+    }
+
     /**
      * 条件查询
      * @param setmeal
@@ -173,7 +218,7 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     @Override
-    public List<DishItemVO> getDishItemById(Integer id) {
+    public List<DishItemVO> getDishItemById(Long id) {
         List<DishItemVO> dishItemVOList = setmealDishMapper.getDishItemById(id);
         return dishItemVOList;
     }
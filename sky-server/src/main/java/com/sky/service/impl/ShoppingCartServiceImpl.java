@@ -1,21 +1,28 @@
 package com.sky.service.impl;
 
+import com.sky.cache.MenuSnapshot;
+import com.sky.cache.MenuSnapshotHolder;
+import com.sky.cache.ShoppingCartCache;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -24,12 +31,15 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
 
     private final ShoppingCartMapper shoppingCartMapper;
 
-    private final DishMapper dishMapper;
+    private final MenuSnapshotHolder menuSnapshotHolder;
 
-    private final SetmealMapper setmealMapper;
+    private final ShoppingCartCache shoppingCartCache;
+
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * 添加商品进入购物车
+     * 开启了redis购物车的话只操作redis，由定时任务同步到数据库
      * @param shoppingCartDTO
      */
     @Override
@@ -40,36 +50,108 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         Long userId = BaseContext.getCurrentId();
         shoppingCart.setUserId(userId);
 
-        // 其实每一个用户只有一个购物车
-        List<ShoppingCart> shoppingCarts = shoppingCartMapper.list(shoppingCart);
+        if (shoppingCartCache.isEnabled()) {
+            String itemKey = ShoppingCartCache.itemKey(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor());
+            // 已经在购物车中的话直接加一，不需要再查询商品信息
+            if (shoppingCartCache.increment(userId, itemKey, null, 1) < 0) {
+                fillItem(shoppingCart);
+                shoppingCart.setCreateTime(LocalDateTime.now());
+                shoppingCartCache.increment(userId, itemKey, shoppingCart, 1);
+            }
+            return;
+        }
+
+        // 不存在就插入，存在就数量加一，一条sql完成
+        // 先查询再插入的话，快速点两下的时候两个请求都会认为购物车中没有这个商品，插入两条重复的数据
+        fillItem(shoppingCart);
+        shoppingCart.setCreateTime(LocalDateTime.now());
+        shoppingCartMapper.upsertIncrement(shoppingCart);
+    }
 
-        // 如果已经加入到购物车的话，那么就是对应的数量增加一
-        if (shoppingCarts != null && shoppingCarts.size() > 0) {
-            ShoppingCart cart = shoppingCarts.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
+    /**
+     * 补充购物车中商品的名称、图片、价格（确定是菜品还是套餐）
+     * 商品信息从菜单快照中获取，不查询数据库，已经停售的商品不能加入购物车
+     * @param shoppingCart
+     */
+    private void fillItem(ShoppingCart shoppingCart) {
+        MenuSnapshot menu = menuSnapshotHolder.get();
+        Long dishId = shoppingCart.getDishId();
+        Long setmealId = shoppingCart.getSetmealId();
+        if (dishId != null) {
+            // 本次插入的是菜品(这里好像还要有口味)
+            Dish dish = menu.getOnSaleDish(dishId);
+            if (dish == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.ITEM_NOT_ON_SALE);
+            }
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+            // dish_flavor, dishId 在属性赋值那里赋值
+        } else if (setmealId != null) {
+            // 本次插入的是套餐
+            Setmeal setmeal = menu.getOnSaleSetmeal(setmealId);
+            if (setmeal == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.ITEM_NOT_ON_SALE);
+            }
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
         } else {
-            // 如果没有加入，那么就是插入这条数据(这里还要确定插入的是菜品还是套餐)
-            Long dishId = shoppingCartDTO.getDishId();
-            Long setmealId = shoppingCartDTO.getSetmealId();
-            if (dishId != null) {
-                // 本次插入的是菜品(这里好像还要有口味)
-                Dish dish = dishMapper.selectById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-                // dish_flavor, dishId 在属性赋值那里赋值
-            } else if (setmealId != null) {
-                // 本次插入的是套餐
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
+            throw new ShoppingCartBusinessException(MessageConstant.ITEM_NOT_ON_SALE);
+        }
+    }
+
+    /**
+     * 批量修改购物车中商品的数量
+     * 直接设置为目标数量而不是累加，客户端重复提交同一批数据结果也是一样的
+     * 开启了redis购物车的时候只执行一个lua脚本（cart_set.lua），由定时任务同步到数据库；
+     * 否则在一个短事务中用一条多行的insert ... on duplicate key update和一条delete完成，不是每个商品写一次数据库
+     * @param shoppingCartDTOs
+     * @return
+     */
+    @Override
+    public List<ShoppingCart> batch(List<ShoppingCartDTO> shoppingCartDTOs) {
+        Long userId = BaseContext.getCurrentId();
+        LocalDateTime now = LocalDateTime.now();
+
+        // 同一个商品出现多次的以最后一次为准
+        Map<String, ShoppingCart> items = new LinkedHashMap<>();
+        for (ShoppingCartDTO shoppingCartDTO : shoppingCartDTOs) {
+            if (shoppingCartDTO.getNumber() == null || shoppingCartDTO.getNumber() < 0) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_NUMBER_INVALID);
+            }
+            if (shoppingCartDTO.getDishId() == null && shoppingCartDTO.getSetmealId() == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.ITEM_NOT_ON_SALE);
             }
-            shoppingCart.setNumber(1); // 这里可以优化一下，默认唯一
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
+            ShoppingCart shoppingCart = new ShoppingCart();
+            BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
+            shoppingCart.setUserId(userId);
+            // 删除的商品不需要校验（已经停售的商品也要能删除）
+            if (shoppingCart.getNumber() > 0) {
+                fillItem(shoppingCart);
+                shoppingCart.setCreateTime(now);
+            }
+            String itemKey = ShoppingCartCache.itemKey(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor());
+            items.put(itemKey, shoppingCart);
+        }
+
+        if (shoppingCartCache.isEnabled()) {
+            shoppingCartCache.setAll(userId, items);
+            return shoppingCartCache.list(userId);
         }
+
+        List<ShoppingCart> upserts = new ArrayList<>();
+        List<ShoppingCart> deletes = new ArrayList<>();
+        items.values().forEach(shoppingCart -> (shoppingCart.getNumber() > 0 ? upserts : deletes).add(shoppingCart));
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!upserts.isEmpty()) {
+                shoppingCartMapper.upsertBatch(upserts);
+            }
+            if (!deletes.isEmpty()) {
+                shoppingCartMapper.deleteItems(userId, deletes);
+            }
+        });
+        return list();
     }
 
     /**
@@ -79,6 +161,10 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public List<ShoppingCart> list() {
         Long userId = BaseContext.getCurrentId();
+        if (shoppingCartCache.isEnabled()) {
+            return shoppingCartCache.list(userId);
+        }
+
         ShoppingCart shoppingCartFilter = ShoppingCart.builder()
                 .userId(userId)
                 .build();
@@ -92,6 +178,10 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public void clean() {
         Long userId = BaseContext.getCurrentId();
+        if (shoppingCartCache.isEnabled()) {
+            shoppingCartCache.clean(userId);
+            return;
+        }
         shoppingCartMapper.deleteByUserId(userId);
     }
 
@@ -101,24 +191,20 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        // 构建查询条件查询出来这条购物车，对应的菜品或是套餐进行相应的的数据减少
-        ShoppingCart shoppingCartFilter = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO, shoppingCartFilter);
-        shoppingCartFilter.setUserId(BaseContext.getCurrentId());
+        if (shoppingCartCache.isEnabled()) {
+            String itemKey = ShoppingCartCache.itemKey(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+            shoppingCartCache.decrement(BaseContext.getCurrentId(), itemKey);
+            return;
+        }
 
-        // 每个用户只有一个购物车（里面有很多个菜品或是套餐）
-        List<ShoppingCart> shoppingCarts = shoppingCartMapper.list(shoppingCartFilter);
+        // 数量大于1的时候直接减一，只剩一份的时候删除（通常只需要一条sql）
+        ShoppingCart shoppingCart = new ShoppingCart();
+        BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
+        shoppingCart.setUserId(BaseContext.getCurrentId());
 
-        if (shoppingCarts != null && !shoppingCarts.isEmpty()) {
-            ShoppingCart shoppingCart = shoppingCarts.get(0);
-            Integer number = shoppingCart.getNumber();
-            // 注意Java中是有一个常量池的[-127, 128]这是常用的数字，他们是同一个引用对象
-            if (number != null && number.equals(1)) {
-                shoppingCartMapper.deleteById(shoppingCart.getId());
-            } else if (number != null && number > 1){
-                shoppingCart.setNumber(number - 1);
-                shoppingCartMapper.updateNumberById(shoppingCart);
-            }
+        Integer count = shoppingCartMapper.decrementNumber(shoppingCart);
+        if (count == null || count == 0) {
+            shoppingCartMapper.deleteIfLast(shoppingCart);
         }
     }
 
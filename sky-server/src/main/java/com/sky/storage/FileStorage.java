@@ -0,0 +1,48 @@
+package com.sky.storage;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 文件存储（上传的图片保存在哪里）
+ * 根据配置 sky.storage.type 选择阿里云oss或者本地磁盘
+ */
+public interface FileStorage {
+
+    /**
+     * 允许上传的扩展名（只有图片，html、svg之类的文件在我们的域名下打开会有存储型xss）
+     */
+    Set<String> ALLOWED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "gif", "webp")));
+
+    /**
+     * 是否已经有这个文件
+     * @param name
+     * @return
+     * @throws IOException
+     */
+    boolean exists(String name) throws IOException;
+
+    /**
+     * 保存文件（流式读取，不会把整个文件读到内存中）
+     * @param source 可以多次打开的输入流（例如MultipartFile）
+     * @param size 文件大小
+     * @param contentType 可以为null
+     * @param name 文件名
+     * @return 文件访问地址
+     * @throws IOException
+     */
+    String save(InputStreamSource source, long size, String contentType, String name) throws IOException;
+
+    /**
+     * 文件访问地址
+     * @param name
+     * @return
+     */
+    String url(String name);
+
+}
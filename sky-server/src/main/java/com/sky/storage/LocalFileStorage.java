@@ -0,0 +1,79 @@
+package com.sky.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+/**
+ * 保存在本地磁盘中，通过 FileController 访问
+ * 文件名只能是 sha256 + 允许的图片扩展名，访问的时候不会出现 ../ 之类的路径穿越，也不会返回html之类的文件
+ */
+@Slf4j
+public class LocalFileStorage implements FileStorage {
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[0-9a-f]{64}(\\.(" + String.join("|", ALLOWED_EXTENSIONS) + "))?");
+
+    private final Path root;
+
+    private final String urlPrefix;
+
+    public LocalFileStorage(String root, String urlPrefix) throws IOException {
+        this.root = Files.createDirectories(Paths.get(root)).toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix;
+        log.info("文件保存在本地目录 {}", this.root);
+    }
+
+    @Override
+    public boolean exists(String name) {
+        Path path = resolve(name);
+        return path != null && Files.isRegularFile(path);
+    }
+
+    /**
+     * 先写到临时文件再移动过去，读取的时候不会读到写了一半的文件
+     */
+    @Override
+    public String save(InputStreamSource source, long size, String contentType, String name) throws IOException {
+        Path path = resolve(name);
+        if (path == null) {
+            throw new IOException("文件名不合法 " + name);
+        }
+        Path temp = Files.createTempFile(root, name, ".tmp");
+        try {
+            try (InputStream in = source.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        String url = url(name);
+        log.info("文件保存到:{} 大小{}", path, size);
+        return url;
+    }
+
+    @Override
+    public String url(String name) {
+        return urlPrefix + name;
+    }
+
+    /**
+     * 文件名对应的本地路径，文件名不合法的时候返回null
+     * @param name
+     * @return
+     */
+    public Path resolve(String name) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            return null;
+        }
+        return root.resolve(name);
+    }
+
+}
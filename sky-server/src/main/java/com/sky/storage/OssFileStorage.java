@@ -0,0 +1,32 @@
+package com.sky.storage;
+
+import com.sky.utils.AliOssUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+
+/**
+ * 保存在阿里云oss中
+ */
+@RequiredArgsConstructor
+public class OssFileStorage implements FileStorage {
+
+    private final AliOssUtil aliOssUtil;
+
+    @Override
+    public boolean exists(String name) throws IOException {
+        return aliOssUtil.exists(name);
+    }
+
+    @Override
+    public String save(InputStreamSource source, long size, String contentType, String name) throws IOException {
+        return aliOssUtil.upload(source, size, contentType, name);
+    }
+
+    @Override
+    public String url(String name) {
+        return aliOssUtil.url(name);
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.sky.task;
+
+import com.sky.cache.ShoppingCartCache;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 购物车的定时任务：同步redis购物车、清理长时间不用的购物车、统计购物车的指标
+ * 指标通过Micrometer发布（/actuator/metrics），前缀是 shopping_cart
+ */
+@Component
+@Slf4j
+public class ShoppingCartTask {
+
+    private final ShoppingCartCache shoppingCartCache;
+
+    private final ShoppingCartMapper shoppingCartMapper;
+
+    private final ShoppingCartProperties shoppingCartProperties;
+
+    // 购物车表的估计行数，最近一小时加购的行数和用户数（每小时统计一次）
+    private final AtomicLong tableRows = new AtomicLong();
+
+    private final AtomicLong recentRows = new AtomicLong();
+
+    private final AtomicLong recentUsers = new AtomicLong();
+
+    private final Counter flushedUsers;
+
+    private final Counter cleanedUsers;
+
+    private final Counter cleanedRows;
+
+    public ShoppingCartTask(ShoppingCartCache shoppingCartCache, ShoppingCartMapper shoppingCartMapper,
+                            ShoppingCartProperties shoppingCartProperties, MeterRegistry meterRegistry) {
+        this.shoppingCartCache = shoppingCartCache;
+        this.shoppingCartMapper = shoppingCartMapper;
+        this.shoppingCartProperties = shoppingCartProperties;
+
+        Gauge.builder("shopping_cart.rows", tableRows, AtomicLong::get)
+                .description("购物车表的估计行数")
+                .register(meterRegistry);
+        Gauge.builder("shopping_cart.recent.rows", recentRows, AtomicLong::get)
+                .description("最近一小时加入购物车的行数")
+                .register(meterRegistry);
+        Gauge.builder("shopping_cart.recent.users", recentUsers, AtomicLong::get)
+                .description("最近一小时加购过的用户数")
+                .register(meterRegistry);
+        if (shoppingCartCache.isEnabled()) {
+            // SCARD是O(1)的，采集的时候直接查询redis
+            Gauge.builder("shopping_cart.dirty.users", shoppingCartCache, cache -> {
+                        Long size = cache.dirtySize();
+                        return size == null ? 0 : size;
+                    })
+                    .description("redis中修改过还没有同步到数据库的用户数")
+                    .register(meterRegistry);
+        }
+        flushedUsers = Counter.builder("shopping_cart.flushed.users")
+                .description("同步到数据库的购物车用户数")
+                .register(meterRegistry);
+        cleanedUsers = Counter.builder("shopping_cart.cleaned.users")
+                .description("清理的购物车用户数")
+                .register(meterRegistry);
+        cleanedRows = Counter.builder("shopping_cart.cleaned.rows")
+                .description("清理的购物车行数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 把redis中修改过的购物车批量同步到数据库
+     */
+    @Scheduled(fixedDelayString = "${sky.shopping-cart.flush-interval:5000}")
+    public void flushShoppingCart() {
+        if (!shoppingCartCache.isEnabled()) {
+            return;
+        }
+        int count = shoppingCartCache.flushDirty();
+        flushedUsers.increment(count);
+        if (count > 0) {
+            log.info("同步购物车到数据库 {} 个用户", count);
+        }
+    }
+
+    /**
+     * 清理长时间没有修改的购物车（按update_time判断，下单之后购物车不会清空，不清理的话这张表会一直增长）
+     * 按user_id的顺序分批删除，每批之间暂停一下，避免长时间锁表和占用数据库
+     */
+    @Scheduled(cron = "${sky.shopping-cart.clean-cron:0 30 3 * * ?}")
+    public void cleanExpiredShoppingCart() throws InterruptedException {
+        LocalDateTime time = LocalDateTime.now().minusDays(shoppingCartProperties.getExpireDays());
+        log.info("清理 {} 之前的购物车", time);
+
+        long afterUserId = 0;
+        int users = 0;
+        int rows = 0;
+        for (int batch = 0; batch < shoppingCartProperties.getCleanMaxBatches(); batch++) {
+            List<Long> userIds = shoppingCartMapper.listExpiredUserIds(afterUserId, time, shoppingCartProperties.getCleanBatchSize());
+            if (userIds.isEmpty()) {
+                break;
+            }
+            afterUserId = userIds.get(userIds.size() - 1);
+
+            // redis中还有购物车的用户最近使用过，数据库中的数据之后还会被同步覆盖，不能删除
+            if (shoppingCartCache.isEnabled()) {
+                userIds = shoppingCartCache.filterInactive(userIds);
+            }
+            if (!userIds.isEmpty()) {
+                Integer count = shoppingCartMapper.deleteExpired(userIds, time);
+                users += userIds.size();
+                rows += count == null ? 0 : count;
+                cleanedUsers.increment(userIds.size());
+                cleanedRows.increment(count == null ? 0 : count);
+            }
+            Thread.sleep(shoppingCartProperties.getCleanPauseMillis());
+        }
+
+        log.info("清理购物车完成 {} 个用户 {} 条数据", users, rows);
+    }
+
+    /**
+     * 每小时统计一次购物车表的大小和最近一小时加购的行数、用户数
+     * 表的行数使用information_schema中的估计值，最近一小时的按create_time的范围查询（idx_create_time），都不扫描整张表
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void countShoppingCart() {
+        Long estimatedRows = shoppingCartMapper.estimateRows();
+        tableRows.set(estimatedRows == null ? 0 : estimatedRows);
+
+        LocalDateTime time = LocalDateTime.now().minusHours(1);
+        Long rows = shoppingCartMapper.countSince(time);
+        Long users = shoppingCartMapper.countUsersSince(time);
+        recentRows.set(rows == null ? 0 : rows);
+        recentUsers.set(users == null ? 0 : users);
+    }
+
+}
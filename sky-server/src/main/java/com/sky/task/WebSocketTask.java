@@ -1,15 +1,28 @@
 package com.sky.task;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky.websocket.OrderReminderBuffer;
 import com.sky.websocket.WebSocketServer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Component
+@Slf4j
 @RequiredArgsConstructor
 public class WebSocketTask {
 
     private final WebSocketServer webSocketServer;
 
+    private final OrderReminderBuffer orderReminderBuffer;
+
+    private final ObjectMapper objectMapper;
+
     /**
      * 通过WebSocket每隔5秒向客户端发送消息
      */
@@ -18,5 +31,26 @@ public class WebSocketTask {
 //        webSocketServer.sendToAllClient("这是来自服务端的消息：" + DateTimeFormatter.ofPattern("HH:mm:ss").format(LocalDateTime.now()));
 //    }
 
+    /**
+     * 推送这段时间内积攒的催单，每个订单一条消息，格式和原来的催单消息一样（type、orderId、content）
+     * 同一个订单在窗口期内只推送一次
+     */
+    @Scheduled(fixedDelayString = "${sky.reminder.flush-interval:1000}")
+    public void flushOrderReminders() throws JsonProcessingException {
+        Map<Long, String> reminders = orderReminderBuffer.drain();
+        if (reminders.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<Long, String> reminder : reminders.entrySet()) {
+            Map map = new HashMap();
+            map.put("type", 2);
+            map.put("orderId", reminder.getKey());
+            map.put("content", "订单号 : " + reminder.getValue());
+
+            String json = objectMapper.writeValueAsString(map);
+            webSocketServer.sendToAllClient(json);
+        }
+    }
 
 }
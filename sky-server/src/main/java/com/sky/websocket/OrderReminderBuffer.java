@@ -0,0 +1,70 @@
+package com.sky.websocket;
+
+import com.sky.properties.ReminderProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 催单的缓冲区
+ * 同一个订单在时间窗口内只记录一次，定时任务取出这段时间内的催单，每个订单推送一条消息
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderReminderBuffer {
+
+    private final ReminderProperties reminderProperties;
+
+    // 订单id -> 上一次提醒的时间
+    private final Map<Long, Long> lastReminded = new ConcurrentHashMap<>();
+
+    // 等待推送的催单 订单id -> 订单号
+    private final Map<Long, String> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次催单
+     * @param orderId
+     * @param orderNumber
+     * @return 窗口期内已经催过的话返回false
+     */
+    public boolean offer(Long orderId, String orderNumber) {
+        long now = System.currentTimeMillis();
+        long window = TimeUnit.SECONDS.toMillis(reminderProperties.getWindowSeconds());
+        boolean[] accepted = new boolean[1];
+        lastReminded.compute(orderId, (id, last) -> {
+            if (last != null && now - last < window) {
+                return last;
+            }
+            accepted[0] = true;
+            return now;
+        });
+        if (accepted[0]) {
+            pending.put(orderId, orderNumber);
+        }
+        return accepted[0];
+    }
+
+    /**
+     * 取出所有等待推送的催单，并且清理已经过了窗口期的记录
+     * @return 订单id -> 订单号
+     */
+    public Map<Long, String> drain() {
+        Map<Long, String> reminders = new LinkedHashMap<>();
+        Iterator<Map.Entry<Long, String>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, String> entry = iterator.next();
+            reminders.put(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+
+        long expired = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(reminderProperties.getWindowSeconds());
+        lastReminded.values().removeIf(last -> last < expired);
+        return reminders;
+    }
+
+}
@@ -0,0 +1,9 @@
+-- 清空购物车，删除、标记已经加载过和标记修改放在一个脚本中原子的执行
+-- 中间不会有其他请求看到没有加载标记的空购物车，又从数据库把已经下单的商品加载回来
+-- KEYS[1] 购物车hash的key  KEYS[2] 修改过的用户id的set
+-- ARGV[1] 用户id  ARGV[2] 过期时间（秒）
+redis.call('DEL', KEYS[1])
+redis.call('HSET', KEYS[1], 'loaded', '1')
+redis.call('SADD', KEYS[2], ARGV[1])
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+return 1
@@ -0,0 +1,21 @@
+-- 购物车中的商品数量减一，减到0的时候删除这个商品，和标记修改放在一个脚本中原子的执行
+-- 字段的前缀和 ShoppingCartCache 中一致：n:商品key -> 数量  i:商品key -> 商品快照
+-- KEYS[1] 购物车hash的key  KEYS[2] 修改过的用户id的set
+-- ARGV[1] 用户id  ARGV[2] 过期时间（秒）  ARGV[3] 商品key
+-- 返回减少之后的数量
+local numberField = 'n:' .. ARGV[3]
+local number = tonumber(redis.call('HGET', KEYS[1], numberField))
+if number == nil then
+    return 0
+end
+
+number = number - 1
+if number <= 0 then
+    redis.call('HDEL', KEYS[1], numberField, 'i:' .. ARGV[3])
+    number = 0
+else
+    redis.call('HSET', KEYS[1], numberField, number)
+end
+redis.call('SADD', KEYS[2], ARGV[1])
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+return number
@@ -0,0 +1,28 @@
+-- 购物车中的商品增加数量（单个商品或者再来一单的多个商品），和标记修改放在一个脚本中原子的执行
+-- 字段的前缀和 ShoppingCartCache 中一致：n:商品key -> 数量  i:商品key -> 商品快照
+-- KEYS[1] 购物车hash的key  KEYS[2] 修改过的用户id的set
+-- ARGV[1] 用户id  ARGV[2] 过期时间（秒）
+-- 之后每三个参数是一个商品：商品key、商品快照（空字符串表示购物车中已经有这个商品）、增加的数量
+-- 返回最后一个商品增加之后的数量，购物车中没有这个商品并且没有传入快照的时候返回 -1（这个商品不做修改）
+local result = 0
+local changed = false
+for i = 3, #ARGV, 3 do
+    local itemKey = ARGV[i]
+    local item = ARGV[i + 1]
+    local delta = tonumber(ARGV[i + 2])
+    if item ~= '' then
+        redis.call('HSETNX', KEYS[1], 'i:' .. itemKey, item)
+    end
+    if item == '' and redis.call('HEXISTS', KEYS[1], 'i:' .. itemKey) == 0 then
+        result = -1
+    else
+        result = redis.call('HINCRBY', KEYS[1], 'n:' .. itemKey, delta)
+        changed = true
+    end
+end
+
+if changed then
+    redis.call('SADD', KEYS[2], ARGV[1])
+    redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return result
@@ -0,0 +1,18 @@
+-- 把数据库中的购物车加载到redis中，已经加载过（有loaded字段）的时候不做任何修改
+-- 加载期间购物车被其他请求加载、修改或者清空了的话，不会用数据库中的旧数据覆盖
+-- 字段的前缀和 ShoppingCartCache 中一致：n:商品key -> 数量  i:商品key -> 商品快照
+-- KEYS[1] 购物车hash的key  KEYS[2] 修改过的用户id的set（加载不算修改，不使用）
+-- ARGV[1] 用户id  ARGV[2] 过期时间（秒）
+-- 之后每三个参数是一个商品：商品key、商品快照、数量
+-- 返回 1 表示加载了，0 表示已经加载过
+if redis.call('HEXISTS', KEYS[1], 'loaded') == 1 then
+    return 0
+end
+
+for i = 3, #ARGV, 3 do
+    redis.call('HSET', KEYS[1], 'i:' .. ARGV[i], ARGV[i + 1])
+    redis.call('HSET', KEYS[1], 'n:' .. ARGV[i], ARGV[i + 2])
+end
+redis.call('HSET', KEYS[1], 'loaded', '1')
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+return 1
@@ -0,0 +1,30 @@
+-- 把购物车中的商品设置为目标数量和新的快照，和标记修改放在一个脚本中原子的执行
+-- 字段的前缀和 ShoppingCartCache 中一致：n:商品key -> 数量  i:商品key -> 商品快照
+-- KEYS[1] 购物车hash的key  KEYS[2] 修改过的用户id的set
+-- ARGV[1] 用户id  ARGV[2] 过期时间（秒）  ARGV[3] 1 只修改购物车中已经有的商品（不会把删除的商品加回来），0 不存在的时候新增
+-- 之后每三个参数是一个商品：商品key、商品快照、目标数量（空字符串表示不修改数量，小于等于0的时候删除这个商品）
+-- 返回修改的商品数量
+local onlyExisting = ARGV[3] == '1'
+local changed = 0
+for i = 4, #ARGV, 3 do
+    local numberField = 'n:' .. ARGV[i]
+    local itemField = 'i:' .. ARGV[i]
+    local number = ARGV[i + 2]
+    if not onlyExisting or redis.call('HEXISTS', KEYS[1], numberField) == 1 then
+        if number ~= '' and tonumber(number) <= 0 then
+            redis.call('HDEL', KEYS[1], numberField, itemField)
+        else
+            redis.call('HSET', KEYS[1], itemField, ARGV[i + 1])
+            if number ~= '' then
+                redis.call('HSET', KEYS[1], numberField, number)
+            end
+        end
+        changed = changed + 1
+    end
+end
+
+if changed > 0 then
+    redis.call('SADD', KEYS[2], ARGV[1])
+    redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return changed
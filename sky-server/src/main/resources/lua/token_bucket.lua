@@ -0,0 +1,28 @@
+-- 令牌桶限流
+-- KEYS[1] 桶的key
+-- ARGV[1] 桶的容量  ARGV[2] 每毫秒补充的令牌数  ARGV[3] 当前时间（毫秒）
+-- 返回 0 表示获取到令牌，否则是还需要等待的毫秒数
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1]) or capacity
+local ts = tonumber(bucket[2]) or now
+
+if now > ts then
+    tokens = math.min(capacity, tokens + (now - ts) * rate)
+    ts = now
+end
+
+local wait = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+else
+    wait = math.ceil((1 - tokens) / rate)
+end
+
+redis.call('HMSET', KEYS[1], 'tokens', tokens, 'ts', ts)
+-- 桶补满所需的时间之后就没有保存的必要了
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000)
+return wait
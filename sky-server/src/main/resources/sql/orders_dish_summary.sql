@@ -0,0 +1,17 @@
+-- 订单表增加菜品摘要和总件数，下单的时候写入，订单列表展示的时候直接使用
+alter table sky_take_out.orders
+    add column dish_summary varchar(1024) null comment '菜品摘要 菜品*数量;',
+    add column dish_count int null comment '商品总件数';
+
+-- 历史订单一次性回填（根据订单明细生成）
+-- group_concat默认只有1024字节，调大之后再按列的长度截取，不会截断在一个汉字的中间
+set session group_concat_max_len = 1024 * 1024;
+update sky_take_out.orders o
+    join (select order_id,
+                 group_concat(concat(name, '*', number, ';') order by id separator '') as dish_summary,
+                 sum(number) as dish_count
+          from sky_take_out.order_detail
+          group by order_id) od on o.id = od.order_id
+set o.dish_summary = left(od.dish_summary, 1024),
+    o.dish_count   = od.dish_count
+where o.dish_summary is null;
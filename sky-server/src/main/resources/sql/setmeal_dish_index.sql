@@ -0,0 +1,5 @@
+-- 套餐详情按 setmeal_id 查询包含的菜品，删除和修改菜品的时候按 dish_id 查询包含它的套餐
+-- setmeal_dish 表原来只有主键，这两个查询都是全表扫描
+alter table sky_take_out.setmeal_dish
+    add index idx_setmeal_id (setmeal_id),
+    add index idx_dish_id (dish_id);
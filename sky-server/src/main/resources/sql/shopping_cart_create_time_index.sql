@@ -0,0 +1,3 @@
+-- 统计最近一段时间加购的行数和用户数，按create_time的范围扫描索引，不用每小时扫描整张表
+alter table sky_take_out.shopping_cart
+    add index idx_create_time (create_time);
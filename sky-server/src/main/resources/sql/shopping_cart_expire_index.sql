@@ -0,0 +1,4 @@
+-- 清理长时间没有修改的购物车时按用户查找最后一次加购的时间
+-- (user_id, create_time) 索引可以让 group by user_id having max(create_time) 只扫描索引，并且按user_id的顺序分批
+alter table sky_take_out.shopping_cart
+    add index idx_user_create_time (user_id, create_time);
@@ -0,0 +1,25 @@
+-- 购物车中同一个用户的同一个商品只能有一条数据，这样添加商品可以使用 insert ... on duplicate key update
+-- dish_id、setmeal_id、dish_flavor 都可能是null，唯一键中null是不相等的，所以使用生成列来做唯一键
+
+-- 先合并已经存在的重复数据
+update sky_take_out.shopping_cart sc
+    join (select min(id) as id, sum(number) as number
+          from sky_take_out.shopping_cart
+          group by user_id, dish_id, setmeal_id, dish_flavor
+          having count(1) > 1) dup on sc.id = dup.id
+set sc.number = dup.number;
+
+delete sc1
+from sky_take_out.shopping_cart sc1
+         join sky_take_out.shopping_cart sc2
+              on sc1.user_id = sc2.user_id
+                  and sc1.dish_id <=> sc2.dish_id
+                  and sc1.setmeal_id <=> sc2.setmeal_id
+                  and sc1.dish_flavor <=> sc2.dish_flavor
+                  and sc1.id > sc2.id;
+
+alter table sky_take_out.shopping_cart
+    add column cart_item varchar(100)
+        generated always as (concat_ws(':', ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, ''))) stored
+        comment '购物车商品标识 菜品id:套餐id:口味',
+    add unique key uk_user_item (user_id, cart_item);
@@ -0,0 +1,14 @@
+-- 购物车增加最后修改时间，清理长时间不用的购物车按最后修改时间判断
+-- create_time是第一次加入的时间，on duplicate key update 加购的时候不会变，按它清理会删掉正在使用的购物车
+alter table sky_take_out.shopping_cart
+    add column update_time datetime not null default current_timestamp comment '最后修改时间';
+
+-- 已有的数据用加入的时间作为最后修改时间
+update sky_take_out.shopping_cart
+set update_time = create_time
+where create_time is not null;
+
+-- 清理的时候按 (user_id, update_time) 查找和删除，原来按create_time的索引不再使用
+alter table sky_take_out.shopping_cart
+    drop index idx_user_create_time,
+    add index idx_user_update_time (user_id, update_time);
@@ -0,0 +1,72 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.vo.DishVO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 比较smile和jdk序列化一个分类下的菜品列表（菜单缓存中最常见的value）的大小和速度
+ * 直接运行main方法：预热之后每种格式各执行若干轮，输出字节数和每次序列化、反序列化的平均耗时
+ */
+public class CompactRedisSerializerBenchmark {
+
+    private static final int DISHES = 30;
+
+    private static final int WARMUP_ROUNDS = 20000;
+
+    private static final int ROUNDS = 50000;
+
+    public static void main(String[] args) {
+        List<DishVO> dishes = dishes();
+        run("smile", new CompactRedisSerializer(true), dishes);
+        run("jdk", new CompactRedisSerializer(false), dishes);
+    }
+
+    private static void run(String name, CompactRedisSerializer serializer, Object value) {
+        byte[] bytes = serializer.serialize(value);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            bytes = serializer.serialize(value);
+        }
+        long serializeNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serializer.deserialize(bytes);
+        }
+        long deserializeNanos = (System.nanoTime() - start) / ROUNDS;
+
+        System.out.printf("%-6s 大小 %6d 字节  序列化 %7.1f 微秒  反序列化 %7.1f 微秒%n",
+                name, bytes.length, serializeNanos / 1000.0, deserializeNanos / 1000.0);
+    }
+
+    private static List<DishVO> dishes() {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long id = 1; id <= DISHES; id++) {
+            DishVO dishVO = new DishVO();
+            dishVO.setId(id);
+            dishVO.setName("招牌菜品" + id);
+            dishVO.setCategoryId(11L);
+            dishVO.setPrice(new BigDecimal("28.00").add(BigDecimal.valueOf(id)));
+            dishVO.setImage("https://sky-take-out.oss-cn-beijing.aliyuncs.com/" + id + ".png");
+            dishVO.setDescription("精选食材，现点现做");
+            dishVO.setStatus(1);
+            dishVO.setUpdateTime(LocalDateTime.of(2024, 5, 1, 12, 30));
+            dishVO.setFlavors(Arrays.asList(
+                    DishFlavor.builder().id(id * 10).dishId(id).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build(),
+                    DishFlavor.builder().id(id * 10 + 1).dishId(id).name("忌口").value("[\"不要葱\",\"不要蒜\",\"不要香菜\"]").build()));
+            dishes.add(dishVO);
+        }
+        return dishes;
+    }
+
+}
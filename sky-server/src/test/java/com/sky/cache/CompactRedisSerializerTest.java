@@ -0,0 +1,147 @@
+package com.sky.cache;
+
+import com.sky.entity.Category;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.vo.DishItemVO;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 菜单缓存中保存的各种类型用smile写入之后读出来要和原来的一样（包括类型）
+ */
+class CompactRedisSerializerTest {
+
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer(true);
+
+    @Test
+    void dishVOList() {
+        DishVO dishVO = new DishVO();
+        dishVO.setId(1L);
+        dishVO.setName("宫保鸡丁");
+        dishVO.setCategoryId(11L);
+        dishVO.setPrice(new BigDecimal("38.50"));
+        dishVO.setImage("https://example.com/1.png");
+        dishVO.setDescription("微辣");
+        dishVO.setStatus(1);
+        dishVO.setUpdateTime(LocalDateTime.of(2024, 5, 1, 12, 30, 15));
+        dishVO.setCategoryName("川菜");
+        dishVO.setFlavors(Arrays.asList(
+                DishFlavor.builder().id(100L).dishId(1L).name("辣度").value("[\"不辣\",\"微辣\"]").build(),
+                DishFlavor.builder().id(101L).dishId(1L).name("忌口").value("[\"不要葱\"]").build()));
+
+        assertRoundTrip(new ArrayList<>(Collections.singletonList(dishVO)));
+    }
+
+    @Test
+    void setmealList() {
+        Setmeal setmeal = Setmeal.builder()
+                .id(2L)
+                .categoryId(12L)
+                .name("商务套餐A")
+                .price(new BigDecimal("68"))
+                .status(1)
+                .description("两菜一汤")
+                .image("https://example.com/2.png")
+                .createTime(LocalDateTime.of(2024, 1, 1, 8, 0))
+                .updateTime(LocalDateTime.of(2024, 2, 1, 8, 0))
+                .createUser(1L)
+                .updateUser(1L)
+                .build();
+
+        assertRoundTrip(new ArrayList<>(Collections.singletonList(setmeal)));
+    }
+
+    @Test
+    void categoryList() {
+        Category category = Category.builder()
+                .id(3L)
+                .type(1)
+                .name("湘菜")
+                .sort(2)
+                .status(1)
+                .createTime(LocalDateTime.of(2024, 1, 1, 8, 0))
+                .updateTime(LocalDateTime.of(2024, 1, 2, 8, 0))
+                .createUser(1L)
+                .updateUser(2L)
+                .build();
+
+        assertRoundTrip(new ArrayList<>(Collections.singletonList(category)));
+    }
+
+    @Test
+    void dishItemVOList() {
+        DishItemVO dishItemVO = DishItemVO.builder()
+                .name("米饭")
+                .copies(2)
+                .image("https://example.com/3.png")
+                .description("东北大米")
+                .build();
+
+        assertRoundTrip(new ArrayList<>(Collections.singletonList(dishItemVO)));
+    }
+
+    @Test
+    void emptyList() {
+        assertRoundTrip(new ArrayList<>());
+    }
+
+    @Test
+    void longValuesInMapAndList() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("small", 1L);
+        map.put("large", Long.MAX_VALUE);
+        map.put("integer", 1);
+        map.put("list", new ArrayList<>(Arrays.asList(1L, 2L, 3L)));
+
+        Object result = assertRoundTrip(map);
+        Map<?, ?> resultMap = (Map<?, ?>) result;
+        assertEquals(Long.class, resultMap.get("small").getClass());
+        assertEquals(Integer.class, resultMap.get("integer").getClass());
+        assertEquals(Long.class, ((List<?>) resultMap.get("list")).get(0).getClass());
+    }
+
+    @Test
+    void scalarValues() {
+        assertEquals(Long.class, assertRoundTrip(1L).getClass());
+        assertRoundTrip("菜单");
+        assertRoundTrip(new BigDecimal("12.30"));
+    }
+
+    @Test
+    void readJdkSerializedValue() {
+        List<Long> value = new ArrayList<>(Arrays.asList(1L, 2L));
+        byte[] bytes = new JdkSerializationRedisSerializer().serialize(value);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void jdkFormat() {
+        CompactRedisSerializer jdkSerializer = new CompactRedisSerializer(false);
+        List<Long> value = new ArrayList<>(Arrays.asList(1L, 2L));
+        byte[] bytes = jdkSerializer.serialize(value);
+        assertTrue((bytes[0] & 0xff) == 0xac && (bytes[1] & 0xff) == 0xed);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    private Object assertRoundTrip(Object value) {
+        Object result = serializer.deserialize(serializer.serialize(value));
+        assertEquals(value, result);
+        assertEquals(value.getClass(), result.getClass());
+        return result;
+    }
+
+}